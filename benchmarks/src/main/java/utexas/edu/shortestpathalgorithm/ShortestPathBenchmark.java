@@ -0,0 +1,128 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package utexas.edu.shortestpathalgorithm;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a single-source solve of each engine on a seeded graph of each
+ * {@link GraphGenerator} topology. The graph, any per-graph preprocessing, the workspace and the thread pool
+ * are built in {@link #setup()}, so only the search itself is timed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShortestPathBenchmark {
+
+    @Param({"delta", "radius", "dijkstra"})
+    public String algorithm;
+
+    @Param({"rmat", "grid", "erdosRenyi"})
+    public String topology;
+
+    // Rounded up to a power of two for rmat and to a square for grid
+    @Param({"10000", "100000"})
+    public int numVertices;
+
+    // Average out-degree of the generated graph; a grid always has about 4
+    @Param({"4", "16"})
+    public int averageDegree;
+
+    @Param({"1000"})
+    public int maxWeight;
+
+    // Delta for Delta Stepping, rho for Radius Stepping
+    @Param({"100"})
+    public int step;
+
+    // 1 runs on the benchmark thread, anything larger uses a pool of that size
+    @Param({"1", "4"})
+    public int threads;
+
+    @Param({"42"})
+    public long seed;
+
+    private Graph graph;
+    private RadiusPreprocessing radii;
+    private ForkJoinPool pool;
+    private SolverWorkspace workspace;
+    private int source;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        graph = generate(topology, numVertices, averageDegree, maxWeight, seed);
+        pool = threads > 1 ? new ForkJoinPool(threads) : null;
+        if (algorithm.equals("radius")) {
+            radii = RadiusPreprocessing.compute(graph, step, false, true);
+        }
+        workspace = new SolverWorkspace(graph.getNumVertices());
+        source = new Random(seed).nextInt(graph.getNumVertices());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    @Benchmark
+    public int[] solve() {
+        switch (algorithm) {
+            case "delta":
+                DeltaStepping deltaStepping = new DeltaStepping(graph, source, workspace);
+                deltaStepping.deltaStep(step, pool);
+                return deltaStepping.getShortestDistances();
+            case "radius":
+                RadiusStepping radiusStepping = new RadiusStepping(graph, radii, source, workspace);
+                radiusStepping.radiusStep(pool);
+                return radiusStepping.getShortestDistances();
+            case "dijkstra":
+                Dijkstra dijkstra = new Dijkstra(graph, source, workspace);
+                dijkstra.run();
+                return dijkstra.getShortestDistances();
+            default:
+                throw new IllegalArgumentException("Unknown algorithm: " + algorithm);
+        }
+    }
+
+    /**
+     * Generates a graph of the given topology with about
+     * {@code numVertices} vertices.
+     */
+    static Graph generate(String topology, int numVertices, int averageDegree, int maxWeight, long seed) {
+        switch (topology) {
+            case "rmat":
+                int scale = 32 - Integer.numberOfLeadingZeros(Math.max(1, numVertices - 1));
+                return GraphGenerator.rmat(scale, averageDegree, maxWeight, seed);
+            case "grid":
+                int side = (int) Math.ceil(Math.sqrt(numVertices));
+                return GraphGenerator.grid(side, side, maxWeight, seed);
+            case "erdosRenyi":
+                return GraphGenerator.erdosRenyi(numVertices, averageDegree, maxWeight, seed);
+            default:
+                throw new IllegalArgumentException("Unknown topology: " + topology);
+        }
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package utexas.edu.shortestpathalgorithm;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Answers point-to-point queries by ALT: A* search whose lower bounds on the
+ * remaining distance come from a {@link LandmarkTable} and the triangle
+ * inequality. The bounds pull the search towards the target, so it settles
+ * a small part of the graph where Dijkstra's algorithm settles everything
+ * closer than the target. Full single-source queries gain nothing from a
+ * target and fall back to Delta Stepping.
+ *
+ * <p>The landmark table of a graph is computed on its first query, and again
+ * after the graph changes; a table computed earlier and loaded with
+ * {@link LandmarkTable#load} can be handed over with
+ * {@link #setLandmarks(CsrGraph, LandmarkTable)} instead.
+ */
+public class AltSolver implements ShortestPathSolver {
+
+    static final String NAME = "alt";
+
+    /**
+     * The landmarks computed per graph unless another count is given.
+     */
+    static final int DEFAULT_LANDMARKS = 16;
+
+    /**
+     * The landmarks a query takes bounds from, those with the best bound
+     * between its source and target. More landmarks tighten the bounds of
+     * a few vertices but cost every relaxation more lookups.
+     */
+    static final int ACTIVE_LANDMARKS = 4;
+
+    private final int numLandmarks;
+    private final WorkspacePool workspaces = new WorkspacePool();
+    private final DeltaSteppingSolver fallback = new DeltaSteppingSolver();
+    private final Map<CsrGraph, Prepared> prepared = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * Initializes a solver that computes {@value #DEFAULT_LANDMARKS}
+     * landmarks per graph.
+     */
+    public AltSolver() {
+        this(DEFAULT_LANDMARKS);
+    }
+
+    /**
+     * Initializes a solver.
+     *
+     * @param numLandmarks The number of landmarks to compute per graph.
+     */
+    public AltSolver(int numLandmarks) {
+        if (numLandmarks <= 0) {
+            throw new IllegalArgumentException("numLandmarks must be positive: " + numLandmarks);
+        }
+        this.numLandmarks = numLandmarks;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public ShortestPathResult solve(CsrGraph graph, int source, SolverOptions options) {
+        // Solve on the heap; the relabelled copy is what the caller keeps
+        ShortestPathResult result = fallback.solve(graph, source, options.withOffHeapDistances(false));
+        return ShortestPathResult.copyOf(NAME, source, result.getDistances(), result.getPredecessors(),
+                options.isOffHeapDistances());
+    }
+
+    @Override
+    public PointToPointResult query(CsrGraph graph, int source, int target, SolverOptions options) {
+        LandmarkTable table = landmarksOf(graph);
+        SolverWorkspace workspace = workspaces.acquire(graph);
+        try {
+            AltSearch search = new AltSearch(graph, source, target, table,
+                    table.selectActive(source, target, ACTIVE_LANDMARKS), workspace);
+            search.run();
+            int distance = search.getShortestDistances()[target];
+            int[] path = ShortestPathResult.tracePath(search.getPredecessors(), source, target,
+                    distance != Integer.MAX_VALUE);
+            return new PointToPointResult(NAME, source, target, distance, path, search.getSettledCount());
+        } finally {
+            workspaces.release(workspace);
+        }
+    }
+
+    /**
+     * Gets the landmark table the solver uses for a graph, computing it if
+     * there is none for the graph's current version.
+     *
+     * @param graph The graph.
+     * @return The table.
+     */
+    public LandmarkTable landmarksOf(CsrGraph graph) {
+        Prepared entry = prepared.get(graph);
+        if (entry == null || entry.version != graph.getVersion()) {
+            long version = graph.getVersion();
+            entry = new Prepared(version, LandmarkTable.compute(graph, numLandmarks));
+            prepared.put(graph, entry);
+        }
+        return entry.table;
+    }
+
+    /**
+     * Makes the solver use a precomputed landmark table for the current
+     * version of a graph.
+     *
+     * @param graph The graph.
+     * @param table The table, computed for this graph.
+     */
+    public void setLandmarks(CsrGraph graph, LandmarkTable table) {
+        if (!table.matches(graph)) {
+            throw new IllegalArgumentException("The landmark table was computed for a different graph");
+        }
+        prepared.put(graph, new Prepared(graph.getVersion(), table));
+    }
+
+    private static class Prepared {
+
+        final long version;
+        final LandmarkTable table;
+
+        Prepared(long version, LandmarkTable table) {
+            this.version = version;
+            this.table = table;
+        }
+    }
+}
+
+/**
+ * Implements A* search towards one target with landmark lower bounds. The
+ * bounds of ALT are consistent, so like Dijkstra's algorithm the search
+ * settles every vertex at most once, and it stops as soon as the target is
+ * settled.
+ */
+class AltSearch {
+
+    private static final int HEAP_ARITY = 4;
+
+    private final CsrGraph graph;
+    private final int source;
+    private final int target;
+    private final LandmarkTable table;
+    private final int[] active;
+    private final SolverWorkspace workspace;
+    private final int[] dist;
+    private final int[] predecessors;
+    private final IndexedDaryHeap heap;
+    private int settledCount;
+
+    /**
+     * Initializes a search on a reused workspace.
+     *
+     * @param graph The graph to find the shortest path in.
+     * @param source The source node.
+     * @param target The target node.
+     * @param table The landmark table of {@code graph}.
+     * @param active The indices of the landmarks to take bounds from.
+     * @param workspace A workspace sized for {@code graph}.
+     */
+    public AltSearch(CsrGraph graph, int source, int target, LandmarkTable table, int[] active,
+            SolverWorkspace workspace) {
+        this.graph = graph;
+        this.source = source;
+        this.target = target;
+        this.table = table;
+        this.active = active;
+        this.workspace = workspace;
+        workspace.reset();
+        this.dist = workspace.dist;
+        this.predecessors = workspace.predecessors;
+        this.heap = workspace.heap(HEAP_ARITY);
+    }
+
+    /**
+     * Runs the search until the target is settled or every vertex that can
+     * still lead to it is.
+     */
+    public void run() {
+        settledCount = 0;
+        int h = potential(source);
+        if (h == Integer.MAX_VALUE) {
+            return;
+        }
+        dist[source] = 0;
+        workspace.touch(source);
+        heap.insertOrDecrease(source, h);
+
+        while (!heap.isEmpty()) {
+            int node = heap.pollMin();
+            settledCount++;
+            if (node == target) {
+                heap.clear();
+                break;
+            }
+            int d = dist[node];
+            for (long e = graph.edgeStart(node), end = graph.edgeEnd(node); e < end; e++) {
+                int neighbour = graph.target(e);
+                int candidate = d + graph.weight(e);
+
+                if (candidate < dist[neighbour]) {
+                    int remaining = potential(neighbour);
+                    if (remaining == Integer.MAX_VALUE) {
+                        // The landmarks prove the target is unreachable from here
+                        continue;
+                    }
+                    dist[neighbour] = candidate;
+                    predecessors[neighbour] = node;
+                    workspace.touch(neighbour);
+                    heap.insertOrDecrease(neighbour, (int) Math.min((long) candidate + remaining, Integer.MAX_VALUE));
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the lower bound on the distance from a vertex to the target.
+     */
+    private int potential(int v) {
+        int best = 0;
+        for (int landmark : active) {
+            int bound = table.lowerBound(v, target, landmark);
+            if (bound > best) {
+                best = bound;
+                if (best == Integer.MAX_VALUE) {
+                    break;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Gets the number of vertices settled by the last run.
+     *
+     * @return The number of settled vertices.
+     */
+    int getSettledCount() {
+        return settledCount;
+    }
+
+    /**
+     * Gets the distances found by the search. The distance of the target
+     * and of every settled vertex is exact; the rest are upper bounds. The
+     * array belongs to the workspace.
+     *
+     * @return An array of distances.
+     */
+    public int[] getShortestDistances() {
+        return dist;
+    }
+
+    /**
+     * Gets the predecessor of every vertex the search reached. Shares the
+     * lifetime of {@link #getShortestDistances()}.
+     *
+     * @return An array of predecessors.
+     */
+    public int[] getPredecessors() {
+        return predecessors;
+    }
+}
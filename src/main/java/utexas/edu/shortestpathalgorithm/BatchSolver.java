@@ -0,0 +1,280 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package utexas.edu.shortestpathalgorithm;
+
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Answers many single-source queries on the same graph at once. Small
+ * batches share a single traversal in which every vertex carries one
+ * distance lane per source, so each edge is read once for the whole batch.
+ * Larger batches are split into independent serial solves that run on all
+ * cores over the shared graph.
+ */
+public final class BatchSolver {
+
+    private final ShortestPathSolver solver;
+
+    /**
+     * Initializes a batch solver whose large batches are answered by serial
+     * Dijkstra.
+     */
+    public BatchSolver() {
+        this(new DijkstraSolver());
+    }
+
+    /**
+     * Initializes a batch solver whose large batches are answered by the
+     * given solver, one source at a time.
+     *
+     * @param solver The solver for independent queries.
+     */
+    public BatchSolver(ShortestPathSolver solver) {
+        this.solver = solver;
+    }
+
+    /**
+     * Computes the shortest distances from every source to every vertex.
+     *
+     * @param graph The graph to search.
+     * @param sources The source nodes; duplicates are allowed.
+     * @param options The tuning options. The delta applies to the shared
+     * traversal; parallelism applies across the sources of a large batch.
+     * @return One row of distances per source.
+     */
+    public DistanceMatrix solve(CsrGraph graph, int[] sources, SolverOptions options) {
+        int[] batch = sources.clone();
+        if (MultiSourceSweep.fits(graph, batch.length)) {
+            int delta = options.getDelta() == SolverOptions.AUTO
+                    ? StepTuner.initialDelta(graph) : options.getDelta();
+            return new DistanceMatrix(batch, new MultiSourceSweep(graph, batch, delta).run());
+        }
+        return new DistanceMatrix(batch, solveIndependently(graph, batch, options));
+    }
+
+    /**
+     * Runs one serial query per source, spreading the sources over the
+     * shared pool when the options allow it.
+     */
+    int[][] solveIndependently(CsrGraph graph, int[] sources, SolverOptions options) {
+        int[][] rows = new int[sources.length][];
+        SolverOptions serial = options.withParallel(false);
+        if (options.isRunInParallel()) {
+            SolverPool.shared().invoke(new BatchTask(graph, sources, serial, rows, 0, sources.length));
+        } else {
+            for (int i = 0; i < sources.length; i++) {
+                rows[i] = solver.solve(graph, sources[i], serial).getDistances();
+            }
+        }
+        return rows;
+    }
+
+    private class BatchTask extends RecursiveAction {
+
+        private final CsrGraph graph;
+        private final int[] sources;
+        private final SolverOptions options;
+        private final int[][] rows;
+        private final int from;
+        private final int to;
+
+        BatchTask(CsrGraph graph, int[] sources, SolverOptions options, int[][] rows, int from, int to) {
+            this.graph = graph;
+            this.sources = sources;
+            this.options = options;
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= 1) {
+                if (to > from) {
+                    rows[from] = solver.solve(graph, sources[from], options).getDistances();
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new BatchTask(graph, sources, options, rows, from, mid),
+                    new BatchTask(graph, sources, options, rows, mid, to));
+        }
+    }
+}
+
+/**
+ * A bucketed label-correcting search from up to {@value #MAX_LANES} sources
+ * at once. The distances of a vertex for all sources are stored next to
+ * each other, and a bit mask per vertex records which sources still have to
+ * relax its edges, so an edge is loaded once and applied to every active
+ * source in a tight loop over adjacent ints.
+ *
+ * <p>Vertices are processed in buckets of width delta, keyed by the
+ * smallest pending distance of any source, exactly as in Delta Stepping;
+ * since all sources sweep the same distance range together, a cyclic array
+ * of {@code maxWeight / delta + 2} buckets suffices.
+ */
+class MultiSourceSweep {
+
+    /**
+     * The most sources one sweep can carry, one per bit of the pending mask.
+     */
+    static final int MAX_LANES = Long.SIZE;
+
+    private final CsrGraph graph;
+    private final int[] sources;
+    private final int lanes;
+    private final int delta;
+
+    // dist[v * lanes + i] is the distance of v from sources[i]
+    private final int[] dist;
+    private final long[] pending;
+
+    private IntList[] buckets;
+    private int numBuckets;
+    private int queued;
+
+    /**
+     * Initializes a sweep.
+     *
+     * @param graph The graph to search.
+     * @param sources The sources, at most {@value #MAX_LANES}.
+     * @param delta The bucket width.
+     */
+    MultiSourceSweep(CsrGraph graph, int[] sources, int delta) {
+        if (delta <= 0) {
+            throw new IllegalArgumentException("delta must be positive: " + delta);
+        }
+        this.graph = graph;
+        this.sources = sources;
+        this.lanes = sources.length;
+        this.delta = delta;
+        this.dist = new int[graph.getNumVertices() * lanes];
+        this.pending = new long[graph.getNumVertices()];
+    }
+
+    /**
+     * Returns whether a batch of the given size can be answered by one
+     * sweep on the graph.
+     *
+     * @param graph The graph to search.
+     * @param numSources The number of sources.
+     * @return {@code true} if the batch fits in the lanes and in one array.
+     */
+    static boolean fits(CsrGraph graph, int numSources) {
+        return numSources > 0 && numSources <= MAX_LANES
+                && (long) graph.getNumVertices() * numSources <= Integer.MAX_VALUE - 8;
+    }
+
+    /**
+     * Runs the sweep.
+     *
+     * @return The distances from each source, one row per source.
+     */
+    int[][] run() {
+        Arrays.fill(dist, Integer.MAX_VALUE);
+        numBuckets = graph.getMaxWeight() / delta + 2;
+        buckets = new IntList[numBuckets];
+        for (int i = 0; i < numBuckets; i++) {
+            buckets[i] = new IntList();
+        }
+        for (int i = 0; i < lanes; i++) {
+            dist[sources[i] * lanes + i] = 0;
+            pending[sources[i]] |= 1L << i;
+            insert(sources[i], 0);
+        }
+
+        IntList frontier = new IntList();
+        for (int current = 0; queued > 0; current++) {
+            IntList bucket = buckets[current % numBuckets];
+            while (!bucket.isEmpty()) {
+                frontier.clear();
+                frontier.addAll(bucket);
+                queued -= bucket.size();
+                bucket.clear();
+                for (int i = 0; i < frontier.size(); i++) {
+                    process(frontier.get(i), current);
+                }
+            }
+        }
+
+        int V = graph.getNumVertices();
+        int[][] rows = new int[lanes][V];
+        for (int v = 0; v < V; v++) {
+            for (int i = 0; i < lanes; i++) {
+                rows[i][v] = dist[v * lanes + i];
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Relaxes the edges of a vertex for every source whose distance to it
+     * falls in the current bucket, and requeues it for the sources still
+     * pending in later buckets.
+     */
+    private void process(int v, int current) {
+        int base = v * lanes;
+        long active = 0;
+        int nextKey = Integer.MAX_VALUE;
+        for (long m = pending[v]; m != 0; m &= m - 1) {
+            int i = Long.numberOfTrailingZeros(m);
+            int d = dist[base + i];
+            if (d / delta == current) {
+                active |= 1L << i;
+            } else {
+                nextKey = Math.min(nextKey, d);
+            }
+        }
+        if (active == 0) {
+            return; // already processed from an earlier entry
+        }
+        pending[v] &= ~active;
+        if (nextKey != Integer.MAX_VALUE) {
+            insert(v, nextKey);
+        }
+
+        boolean allLanes = Long.bitCount(active) == lanes;
+        for (long e = graph.edgeStart(v), end = graph.edgeEnd(v); e < end; e++) {
+            int t = graph.target(e);
+            int w = graph.weight(e);
+            int targetBase = t * lanes;
+            long improved = 0;
+            int minCandidate = Integer.MAX_VALUE;
+            if (allLanes) {
+                // Every lane is active: a plain loop the JIT can vectorize
+                for (int i = 0; i < lanes; i++) {
+                    int candidate = dist[base + i] + w;
+                    if (candidate < dist[targetBase + i]) {
+                        dist[targetBase + i] = candidate;
+                        improved |= 1L << i;
+                        minCandidate = Math.min(minCandidate, candidate);
+                    }
+                }
+            } else {
+                for (long m = active; m != 0; m &= m - 1) {
+                    int i = Long.numberOfTrailingZeros(m);
+                    int candidate = dist[base + i] + w;
+                    if (candidate < dist[targetBase + i]) {
+                        dist[targetBase + i] = candidate;
+                        improved |= 1L << i;
+                        minCandidate = Math.min(minCandidate, candidate);
+                    }
+                }
+            }
+            if (improved != 0) {
+                pending[t] |= improved;
+                insert(t, minCandidate);
+            }
+        }
+    }
+
+    private void insert(int v, int key) {
+        buckets[(key / delta) % numBuckets].add(v);
+        queued++;
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package utexas.edu.shortestpathalgorithm;
+
+/**
+ * Implements bidirectional Dijkstra for point-to-point queries. A forward
+ * search from the source on the graph and a backward search from the target
+ * on its reverse take turns, always advancing the side whose next vertex is
+ * closer, and stop once the two frontiers together can no longer improve on
+ * the best meeting point found.
+ */
+class BidirectionalDijkstra {
+
+    private static final int HEAP_ARITY = 4;
+
+    private final CsrGraph forwardGraph;
+    private final CsrGraph backwardGraph;
+    private final int source;
+    private final int target;
+    private final SolverWorkspace forward;
+    private final SolverWorkspace backward;
+
+    private long best;
+    private int meeting;
+    private int settledCount;
+
+    /**
+     * Initializes a bidirectional search on two reused workspaces.
+     *
+     * @param graph The graph to find the shortest path in.
+     * @param source The source node.
+     * @param target The target node.
+     * @param forward A workspace for the search from the source.
+     * @param backward A workspace for the search from the target.
+     */
+    public BidirectionalDijkstra(CsrGraph graph, int source, int target, SolverWorkspace forward, SolverWorkspace backward) {
+        this.forwardGraph = graph;
+        this.backwardGraph = graph.reverse();
+        this.source = source;
+        this.target = target;
+        this.forward = forward;
+        this.backward = backward;
+        forward.reset();
+        backward.reset();
+    }
+
+    /**
+     * Runs the search.
+     */
+    public void run() {
+        IndexedDaryHeap forwardHeap = forward.heap(HEAP_ARITY);
+        IndexedDaryHeap backwardHeap = backward.heap(HEAP_ARITY);
+        best = Long.MAX_VALUE;
+        meeting = -1;
+        settledCount = 0;
+
+        start(forward, forwardHeap, source);
+        start(backward, backwardHeap, target);
+        if (source == target) {
+            best = 0;
+            meeting = source;
+        }
+
+        while (!forwardHeap.isEmpty() && !backwardHeap.isEmpty()) {
+            if ((long) forwardHeap.minKey() + backwardHeap.minKey() >= best) {
+                break;
+            }
+            if (forwardHeap.minKey() <= backwardHeap.minKey()) {
+                step(forwardGraph, forward, forwardHeap, backward);
+            } else {
+                step(backwardGraph, backward, backwardHeap, forward);
+            }
+        }
+        forwardHeap.clear();
+        backwardHeap.clear();
+    }
+
+    private static void start(SolverWorkspace side, IndexedDaryHeap heap, int vertex) {
+        side.dist[vertex] = 0;
+        side.touch(vertex);
+        heap.insertOrDecrease(vertex, 0);
+    }
+
+    /**
+     * Settles the closest vertex of one side and relaxes its edges, checking
+     * every improved vertex against the other side's labels for a shorter
+     * meeting point.
+     */
+    private void step(CsrGraph graph, SolverWorkspace side, IndexedDaryHeap heap, SolverWorkspace other) {
+        int[] dist = side.dist;
+        int node = heap.pollMin();
+        settledCount++;
+        int d = dist[node];
+        for (long e = graph.edgeStart(node), end = graph.edgeEnd(node); e < end; e++) {
+            int neighbour = graph.target(e);
+            int candidate = d + graph.weight(e);
+
+            if (candidate < dist[neighbour]) {
+                dist[neighbour] = candidate;
+                side.predecessors[neighbour] = node;
+                side.touch(neighbour);
+                heap.insertOrDecrease(neighbour, candidate);
+
+                int remaining = other.dist[neighbour];
+                if (remaining != Integer.MAX_VALUE && (long) candidate + remaining < best) {
+                    best = (long) candidate + remaining;
+                    meeting = neighbour;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the shortest distance from source to target.
+     *
+     * @return The distance, or {@link Integer#MAX_VALUE} if unreachable.
+     */
+    public int getDistance() {
+        return meeting < 0 ? Integer.MAX_VALUE : (int) best;
+    }
+
+    /**
+     * Gets the vertices on a shortest path from source to target, joining
+     * the forward tree up to the meeting vertex with the backward tree after
+     * it.
+     *
+     * @return The path, or an empty array if the target is unreachable.
+     */
+    public int[] getPath() {
+        if (meeting < 0) {
+            return new int[0];
+        }
+        int[] head = ShortestPathResult.tracePath(forward.predecessors, source, meeting, true);
+        int[] tail = ShortestPathResult.tracePath(backward.predecessors, target, meeting, true);
+        int[] path = new int[head.length + tail.length - 1];
+        System.arraycopy(head, 0, path, 0, head.length);
+        for (int i = 1; i < tail.length; i++) {
+            path[head.length + i - 1] = tail[tail.length - 1 - i];
+        }
+        return path;
+    }
+
+    /**
+     * Gets the number of vertices settled by both searches together.
+     *
+     * @return The number of settled vertices.
+     */
+    int getSettledCount() {
+        return settledCount;
+    }
+}
+
+/**
+ * Exposes {@link BidirectionalDijkstra} as a {@link ShortestPathSolver}. Full
+ * single-source queries fall back to plain {@link Dijkstra}.
+ */
+class BidirectionalDijkstraSolver implements ShortestPathSolver {
+
+    static final String NAME = "bidirectional";
+
+    private final WorkspacePool workspaces = new WorkspacePool();
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public ShortestPathResult solve(CsrGraph graph, int source, SolverOptions options) {
+        SolverWorkspace workspace = workspaces.acquire(graph);
+        try {
+            Dijkstra dijkstra = new Dijkstra(graph, source, workspace);
+            dijkstra.run();
+            return ShortestPathResult.copyOf(NAME, source, dijkstra.getShortestDistances(),
+                    dijkstra.getPredecessors(), options.isOffHeapDistances());
+        } finally {
+            workspaces.release(workspace);
+        }
+    }
+
+    @Override
+    public PointToPointResult query(CsrGraph graph, int source, int target, SolverOptions options) {
+        SolverWorkspace forward = workspaces.acquire(graph);
+        SolverWorkspace backward = workspaces.acquire(graph);
+        try {
+            BidirectionalDijkstra search = new BidirectionalDijkstra(graph, source, target, forward, backward);
+            search.run();
+            return new PointToPointResult(NAME, source, target, search.getDistance(), search.getPath(),
+                    search.getSettledCount());
+        } finally {
+            workspaces.release(forward);
+            workspaces.release(backward);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package utexas.edu.shortestpathalgorithm;
+
+/**
+ * Puts a {@link ResultCache} in front of another solver. A full query is
+ * answered from the cache when the same source was solved on the same
+ * version of the graph before; point-to-point queries read a cached result
+ * when there is one and otherwise run the underlying solver's early-exit
+ * search without caching anything.
+ */
+public class CachingSolver implements ShortestPathSolver {
+
+    private final ShortestPathSolver solver;
+    private final ResultCache cache;
+
+    /**
+     * Initializes a caching solver.
+     *
+     * @param solver The solver to answer misses with.
+     * @param cache The cache, which may be shared with other solvers.
+     */
+    public CachingSolver(ShortestPathSolver solver, ResultCache cache) {
+        this.solver = solver;
+        this.cache = cache;
+    }
+
+    @Override
+    public String getName() {
+        return solver.getName();
+    }
+
+    @Override
+    public ShortestPathResult solve(CsrGraph graph, int source, SolverOptions options) {
+        ShortestPathResult cached = cache.get(graph, source, solver.getName());
+        if (cached != null) {
+            return cached;
+        }
+        long version = graph.getVersion();
+        ShortestPathResult result = solver.solve(graph, source, options);
+        cache.put(graph, version, solver.getName(), result);
+        return result;
+    }
+
+    @Override
+    public PointToPointResult query(CsrGraph graph, int source, int target, SolverOptions options) {
+        ShortestPathResult cached = cache.get(graph, source, solver.getName());
+        if (cached == null) {
+            return solver.query(graph, source, target, options);
+        }
+        return new PointToPointResult(getName(), source, target, cached.getDistance(target), cached.getPath(target), 0);
+    }
+
+    /**
+     * Gets the cache this solver reads and fills.
+     *
+     * @return The cache.
+     */
+    public ResultCache getCache() {
+        return cache;
+    }
+}
@@ -0,0 +1,923 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package utexas.edu.shortestpathalgorithm;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+
+/**
+ * A Contraction Hierarchy of a graph: the vertices ranked by importance and
+ * the graph augmented with shortcut edges, so that a shortest path can
+ * always be found by climbing to higher ranks and then descending again.
+ * A point-to-point query searches upwards from both ends and touches a few
+ * hundred vertices where Dijkstra's algorithm touches the whole graph, and
+ * a full single-source query is a short upward search followed by one
+ * linear sweep down the ranks (PHAST).
+ *
+ * <p>Vertices are contracted in order of increasing importance, estimated
+ * by their edge difference, the shortcuts contracting them would add minus
+ * the edges it removes, plus the contracted neighbours and the depth of the
+ * hierarchy below them. Contracting a vertex adds a shortcut between two of
+ * its neighbours unless a witness search finds a path between them, no
+ * longer, that avoids it. Each round contracts an independent set of
+ * vertices, those more important than none of their neighbours, in
+ * parallel; only the neighbours of contracted vertices have their
+ * importance recomputed after a round.
+ *
+ * <p>Once the remaining graph becomes dense, the vertices still in it are
+ * left uncontracted as the core and take the highest ranks in no
+ * particular order. The edges among core vertices belong to both search
+ * directions, so within the core the queries are plain bidirectional
+ * Dijkstra; on road-like graphs the core is small or empty.
+ *
+ * <p>The hierarchy is stored in two CSR arrays indexed by rank: the upward
+ * edges of every vertex, to higher ranks or within the core, and its
+ * downward edges, from higher ranks or within the core. Every edge records
+ * the vertex it bypasses, or -1 for an original edge, from which paths are
+ * unpacked.
+ */
+public final class ContractionHierarchy {
+
+    /**
+     * A witness search gives up after settling this many vertices and the
+     * shortcut is added regardless. Extra shortcuts never make queries
+     * wrong, only slower.
+     */
+    static final int WITNESS_SETTLE_LIMIT = 500;
+
+    /**
+     * The settle limit of the witness searches that only estimate the
+     * importance of a vertex. Importance is recomputed whenever a neighbour
+     * is contracted, so hubs are estimated many times and must be cheap.
+     */
+    static final int ESTIMATE_SETTLE_LIMIT = 20;
+
+    /**
+     * Contraction stops once the remaining vertices average more than this
+     * many out-edges. On graphs without small separators the remaining
+     * graph grows denser with every round, and contracting it would cost
+     * quadratic shortcuts; it is kept as an uncontracted core instead.
+     */
+    static final int CORE_DEGREE = 16;
+
+    /**
+     * Vertices per task when priorities and shortcuts are computed in
+     * parallel; each vertex costs a witness search per in-neighbour.
+     */
+    private static final int CONTRACTION_GRAIN = 64;
+
+    private static final int HEAP_ARITY = 4;
+
+    private final int numVertices;
+    private final int[] rank;
+    private final int[] order;
+    private final int[] upOffsets;
+    private final int[] upTargets;
+    private final int[] upWeights;
+    private final int[] upMiddles;
+    private final int[] downOffsets;
+    private final int[] downSources;
+    private final int[] downWeights;
+    private final int[] downMiddles;
+    private final int coreStart;
+    private final long numShortcuts;
+    private final WorkspacePool workspaces = new WorkspacePool();
+
+    private ContractionHierarchy(int[] rank, int[] order, int[] upOffsets, int[] upTargets, int[] upWeights,
+            int[] upMiddles, int[] downOffsets, int[] downSources, int[] downWeights, int[] downMiddles,
+            int coreStart, long numShortcuts) {
+        this.numVertices = rank.length;
+        this.rank = rank;
+        this.order = order;
+        this.upOffsets = upOffsets;
+        this.upTargets = upTargets;
+        this.upWeights = upWeights;
+        this.upMiddles = upMiddles;
+        this.downOffsets = downOffsets;
+        this.downSources = downSources;
+        this.downWeights = downWeights;
+        this.downMiddles = downMiddles;
+        this.coreStart = coreStart;
+        this.numShortcuts = numShortcuts;
+    }
+
+    /**
+     * Builds the hierarchy of a graph on the shared pool.
+     *
+     * @param graph The graph.
+     * @return The hierarchy.
+     */
+    public static ContractionHierarchy build(CsrGraph graph) {
+        return build(graph, true);
+    }
+
+    /**
+     * Builds the hierarchy of a graph.
+     *
+     * @param graph The graph.
+     * @param runInParallel Whether to contract on the shared pool rather
+     * than on the calling thread.
+     * @return The hierarchy.
+     */
+    public static ContractionHierarchy build(CsrGraph graph, boolean runInParallel) {
+        return new Contraction(graph, runInParallel ? SolverPool.shared() : null).run();
+    }
+
+    /**
+     * Finds a shortest path by a bidirectional upward search. Each side
+     * stops once its closest open vertex is no closer than the best meeting
+     * point, and skips vertices a higher neighbour already reaches more
+     * cheaply (stall-on-demand).
+     *
+     * @param source The source node.
+     * @param target The target node.
+     * @return The distance and path from {@code source} to {@code target}.
+     */
+    public PointToPointResult query(int source, int target) {
+        checkNode(source);
+        checkNode(target);
+        SolverWorkspace forward = workspaces.acquire(numVertices);
+        SolverWorkspace backward = workspaces.acquire(numVertices);
+        try {
+            forward.reset();
+            backward.reset();
+            IndexedDaryHeap forwardHeap = forward.heap(HEAP_ARITY);
+            IndexedDaryHeap backwardHeap = backward.heap(HEAP_ARITY);
+            int s = rank[source];
+            int t = rank[target];
+            start(forward, forwardHeap, s);
+            start(backward, backwardHeap, t);
+            long best = Long.MAX_VALUE;
+            int meeting = -1;
+            int settledCount = 0;
+
+            while (true) {
+                boolean forwardOpen = !forwardHeap.isEmpty() && forwardHeap.minKey() < best;
+                boolean backwardOpen = !backwardHeap.isEmpty() && backwardHeap.minKey() < best;
+                if (!forwardOpen && !backwardOpen) {
+                    break;
+                }
+                boolean isForward = forwardOpen && (!backwardOpen || forwardHeap.minKey() <= backwardHeap.minKey());
+                SolverWorkspace side = isForward ? forward : backward;
+                SolverWorkspace other = isForward ? backward : forward;
+                IndexedDaryHeap heap = isForward ? forwardHeap : backwardHeap;
+
+                int u = heap.pollMin();
+                settledCount++;
+                int d = side.dist[u];
+                if (other.dist[u] != Integer.MAX_VALUE && (long) d + other.dist[u] < best) {
+                    best = (long) d + other.dist[u];
+                    meeting = u;
+                }
+                if (isForward ? stalled(side.dist, u, d, downOffsets, downSources, downWeights)
+                        : stalled(side.dist, u, d, upOffsets, upTargets, upWeights)) {
+                    continue;
+                }
+                int[] offsets = isForward ? upOffsets : downOffsets;
+                int[] heads = isForward ? upTargets : downSources;
+                int[] weights = isForward ? upWeights : downWeights;
+                for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                    int x = heads[e];
+                    int candidate = d + weights[e];
+                    if (candidate < side.dist[x]) {
+                        side.dist[x] = candidate;
+                        side.predecessors[x] = u;
+                        side.touch(x);
+                        heap.insertOrDecrease(x, candidate);
+                    }
+                }
+            }
+            forwardHeap.clear();
+            backwardHeap.clear();
+
+            if (meeting < 0) {
+                return new PointToPointResult(ContractionHierarchySolver.NAME, source, target, Integer.MAX_VALUE,
+                        new int[0], settledCount);
+            }
+            IntList path = new IntList();
+            int[] up = ShortestPathResult.tracePath(forward.predecessors, s, meeting, true);
+            path.add(up[0]);
+            for (int i = 1; i < up.length; i++) {
+                unpack(up[i - 1], up[i], path);
+            }
+            for (int u = meeting; u != t; u = backward.predecessors[u]) {
+                unpack(u, backward.predecessors[u], path);
+            }
+            int[] vertices = path.toArray();
+            for (int i = 0; i < vertices.length; i++) {
+                vertices[i] = order[vertices[i]];
+            }
+            return new PointToPointResult(ContractionHierarchySolver.NAME, source, target, (int) best, vertices,
+                    settledCount);
+        } finally {
+            workspaces.release(forward);
+            workspaces.release(backward);
+        }
+    }
+
+    private static void start(SolverWorkspace side, IndexedDaryHeap heap, int vertex) {
+        side.dist[vertex] = 0;
+        side.touch(vertex);
+        heap.insertOrDecrease(vertex, 0);
+    }
+
+    /**
+     * Checks whether a higher neighbour reaches {@code u} more cheaply than
+     * its distance {@code d}, through an edge the search cannot use. The
+     * neighbour's own path is then the better one, so {@code u} need not
+     * be expanded.
+     */
+    private static boolean stalled(int[] dist, int u, int d, int[] offsets, int[] heads, int[] weights) {
+        for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+            int x = heads[e];
+            if (dist[x] != Integer.MAX_VALUE && (long) dist[x] + weights[e] < d) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Computes the distances from a source to every vertex by PHAST: an
+     * upward search from the source, then one sweep over the vertices from
+     * the highest rank down, relaxing the downward edges into each vertex.
+     * The upward search also settles the core, and below it every vertex's
+     * higher neighbours are final before the sweep reaches it, reading the
+     * rank-ordered arrays from back to front.
+     *
+     * @param source The source node.
+     * @return The distances from {@code source}, with the shortest path
+     * tree in original edges.
+     */
+    public ShortestPathResult solve(int source) {
+        checkNode(source);
+        int[] dist = new int[numVertices];
+        int[] parent = new int[numVertices];
+        Arrays.fill(dist, Integer.MAX_VALUE);
+        Arrays.fill(parent, -1);
+        int s = rank[source];
+
+        SolverWorkspace workspace = workspaces.acquire(numVertices);
+        try {
+            workspace.reset();
+            IndexedDaryHeap heap = workspace.heap(HEAP_ARITY);
+            dist[s] = 0;
+            heap.insertOrDecrease(s, 0);
+            while (!heap.isEmpty()) {
+                int u = heap.pollMin();
+                int d = dist[u];
+                for (int e = upOffsets[u]; e < upOffsets[u + 1]; e++) {
+                    int x = upTargets[e];
+                    int candidate = d + upWeights[e];
+                    if (candidate < dist[x]) {
+                        dist[x] = candidate;
+                        parent[x] = u;
+                        heap.insertOrDecrease(x, candidate);
+                    }
+                }
+            }
+        } finally {
+            workspaces.release(workspace);
+        }
+
+        for (int r = coreStart - 1; r >= 0; r--) {
+            int best = dist[r];
+            for (int e = downOffsets[r]; e < downOffsets[r + 1]; e++) {
+                int a = dist[downSources[e]];
+                if (a != Integer.MAX_VALUE && a + downWeights[e] < best) {
+                    best = a + downWeights[e];
+                    parent[r] = downSources[e];
+                }
+            }
+            dist[r] = best;
+        }
+
+        int[] tree = originalTree(s, parent);
+        int[] distances = new int[numVertices];
+        int[] predecessors = new int[numVertices];
+        for (int v = 0; v < numVertices; v++) {
+            int r = rank[v];
+            distances[v] = dist[r];
+            predecessors[v] = tree[r] < 0 ? -1 : order[tree[r]];
+        }
+        return new ShortestPathResult(ContractionHierarchySolver.NAME, source, distances, predecessors);
+    }
+
+    /**
+     * Turns a shortest path tree over hierarchy edges into one over original
+     * edges. Taking the last hop of every vertex's shortcut independently is
+     * not enough: with zero-weight edges two vertices at the same distance
+     * can each lie on the other's shortcut and would point at each other.
+     * Instead every vertex is attached to the tree once, only ever to a
+     * vertex already attached, by unpacking the hierarchy edges from its
+     * tree parent, which is attached first.
+     *
+     * @param s The rank of the source.
+     * @param parent The parent rank of every rank in the hierarchy tree.
+     * @return The predecessor rank of every rank over original edges, or -1.
+     */
+    private int[] originalTree(int s, int[] parent) {
+        int[] tree = new int[numVertices];
+        Arrays.fill(tree, -1);
+        boolean[] attached = new boolean[numVertices];
+        attached[s] = true;
+        IntList chain = new IntList();
+        for (int r = 0; r < numVertices; r++) {
+            // The hierarchy tree is acyclic, so its parent chains end at attached vertices
+            for (int x = r; !attached[x] && parent[x] >= 0; x = parent[x]) {
+                chain.add(x);
+            }
+            for (int i = chain.size() - 1; i >= 0; i--) {
+                int x = chain.get(i);
+                attach(parent[x], x, tree, attached);
+            }
+            chain.clear();
+        }
+        return tree;
+    }
+
+    /**
+     * Attaches {@code to} and the vertices its edge from the attached
+     * vertex {@code from} bypasses, skipping the parts of the path that end
+     * at vertices attached already.
+     */
+    private void attach(int from, int to, int[] tree, boolean[] attached) {
+        if (attached[to]) {
+            return;
+        }
+        int middle = middle(from, to);
+        if (middle < 0) {
+            tree[to] = from;
+        } else {
+            attach(from, middle, tree, attached);
+            attach(middle, to, tree, attached);
+        }
+        attached[to] = true;
+    }
+
+    /**
+     * Appends the vertices of the original path an edge stands for, after
+     * its tail, expanding shortcuts recursively.
+     */
+    private void unpack(int from, int to, IntList path) {
+        int middle = middle(from, to);
+        if (middle < 0) {
+            path.add(to);
+            return;
+        }
+        unpack(from, middle, path);
+        unpack(middle, to, path);
+    }
+
+    /**
+     * Gets the vertex an edge between two ranks bypasses. An edge towards a
+     * higher rank is stored with the upward edges of its tail, one towards
+     * a lower rank with the downward edges of its head.
+     */
+    private int middle(int from, int to) {
+        if (from < to) {
+            for (int e = upOffsets[from]; e < upOffsets[from + 1]; e++) {
+                if (upTargets[e] == to) {
+                    return upMiddles[e];
+                }
+            }
+        } else {
+            for (int e = downOffsets[to]; e < downOffsets[to + 1]; e++) {
+                if (downSources[e] == from) {
+                    return downMiddles[e];
+                }
+            }
+        }
+        throw new IllegalStateException("No hierarchy edge from rank " + from + " to rank " + to);
+    }
+
+    private void checkNode(int node) {
+        if (node < 0 || node >= numVertices) {
+            throw new IllegalArgumentException("node out of range: " + node);
+        }
+    }
+
+    /**
+     * Gets the number of vertices.
+     *
+     * @return The number of vertices.
+     */
+    public int getNumVertices() {
+        return numVertices;
+    }
+
+    /**
+     * Gets the rank of a vertex, the position at which it was contracted.
+     *
+     * @param v The vertex.
+     * @return The rank.
+     */
+    public int getRank(int v) {
+        return rank[v];
+    }
+
+    /**
+     * Gets the number of vertices left uncontracted in the core, which hold
+     * the highest ranks.
+     *
+     * @return The core size.
+     */
+    public int getCoreSize() {
+        return numVertices - coreStart;
+    }
+
+    /**
+     * Gets the number of shortcut edges the contraction added.
+     *
+     * @return The shortcut count.
+     */
+    public long getNumShortcuts() {
+        return numShortcuts;
+    }
+
+    @Override
+    public String toString() {
+        return "ContractionHierarchy[vertices=" + numVertices + ", upward=" + upTargets.length + ", downward="
+                + downSources.length + ", shortcuts=" + numShortcuts + ", core=" + getCoreSize() + "]";
+    }
+
+    /**
+     * The outgoing or incoming edges of one vertex in the remaining graph,
+     * which shrinks as vertices are contracted and gains shortcuts.
+     */
+    private static final class Adjacency {
+
+        int[] vertices = new int[4];
+        int[] weights = new int[4];
+        int[] middles = new int[4];
+        int size;
+
+        int indexOf(int v) {
+            for (int i = 0; i < size; i++) {
+                if (vertices[i] == v) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Adds an edge, or lowers the weight of the edge to the same vertex.
+         */
+        void insertOrDecrease(int v, int weight, int middle) {
+            int i = indexOf(v);
+            if (i >= 0) {
+                if (weight < weights[i]) {
+                    weights[i] = weight;
+                    middles[i] = middle;
+                }
+                return;
+            }
+            if (size == vertices.length) {
+                vertices = Arrays.copyOf(vertices, 2 * size);
+                weights = Arrays.copyOf(weights, 2 * size);
+                middles = Arrays.copyOf(middles, 2 * size);
+            }
+            vertices[size] = v;
+            weights[size] = weight;
+            middles[size] = middle;
+            size++;
+        }
+
+        void remove(int v) {
+            int i = indexOf(v);
+            if (i >= 0) {
+                size--;
+                vertices[i] = vertices[size];
+                weights[i] = weights[size];
+                middles[i] = middles[size];
+            }
+        }
+    }
+
+    /**
+     * The state of one contraction: the remaining graph, the importance of
+     * every remaining vertex and the hierarchy built so far.
+     */
+    private static final class Contraction {
+
+        final int V;
+        final ForkJoinPool pool;
+        final Adjacency[] out;
+        final Adjacency[] in;
+        final boolean[] inRound;
+        final boolean[] dirty;
+        final int[] priority;
+        final int[] deletedNeighbours;
+        final int[] level;
+        final WorkspacePool workspaces = new WorkspacePool();
+
+        final int[] rank;
+        final int[] order;
+        final int[] upOffsets;
+        final int[] downOffsets;
+        final IntList upTargets = new IntList();
+        final IntList upWeights = new IntList();
+        final IntList upMiddles = new IntList();
+        final IntList downSources = new IntList();
+        final IntList downWeights = new IntList();
+        final IntList downMiddles = new IntList();
+        final IntList touched = new IntList();
+        long numShortcuts;
+
+        Contraction(CsrGraph graph, ForkJoinPool pool) {
+            this.V = graph.getNumVertices();
+            this.pool = pool;
+            this.out = new Adjacency[V];
+            this.in = new Adjacency[V];
+            for (int u = 0; u < V; u++) {
+                out[u] = new Adjacency();
+                in[u] = new Adjacency();
+            }
+            for (int u = 0; u < V; u++) {
+                for (long e = graph.edgeStart(u), end = graph.edgeEnd(u); e < end; e++) {
+                    int v = graph.target(e);
+                    if (v != u) {
+                        out[u].insertOrDecrease(v, graph.weight(e), -1);
+                        in[v].insertOrDecrease(u, graph.weight(e), -1);
+                    }
+                }
+            }
+            this.inRound = new boolean[V];
+            this.dirty = new boolean[V];
+            this.priority = new int[V];
+            this.deletedNeighbours = new int[V];
+            this.level = new int[V];
+            this.rank = new int[V];
+            this.order = new int[V];
+            this.upOffsets = new int[V + 1];
+            this.downOffsets = new int[V + 1];
+        }
+
+        ContractionHierarchy run() {
+            int[] remaining = new int[V];
+            for (int v = 0; v < V; v++) {
+                remaining[v] = v;
+            }
+            forEach(remaining, V, v -> priority[v] = priority(v));
+
+            int numRemaining = V;
+            int nextRank = 0;
+            while (numRemaining > 0 && !isDense(remaining, numRemaining)) {
+                forEach(remaining, numRemaining, v -> inRound[v] = isLocalMinimum(v));
+                int[] round = new int[numRemaining];
+                int roundSize = 0;
+                int kept = 0;
+                for (int i = 0; i < numRemaining; i++) {
+                    int v = remaining[i];
+                    if (inRound[v]) {
+                        round[roundSize++] = v;
+                    } else {
+                        remaining[kept++] = v;
+                    }
+                }
+                numRemaining = kept;
+
+                IntList[] shortcuts = new IntList[roundSize];
+                int[] members = round;
+                run(roundSize, (from, to) -> {
+                    for (int i = from; i < to; i++) {
+                        shortcuts[i] = new IntList();
+                        shortcuts(members[i], true, shortcuts[i]);
+                    }
+                });
+                for (int i = 0; i < roundSize; i++) {
+                    contract(round[i], shortcuts[i], nextRank++);
+                }
+                for (int i = 0; i < roundSize; i++) {
+                    inRound[round[i]] = false;
+                }
+
+                int[] update = touched.toArray();
+                touched.clear();
+                forEach(update, update.length, v -> {
+                    priority[v] = priority(v);
+                    dirty[v] = false;
+                });
+            }
+
+            int coreStart = nextRank;
+            for (int i = 0; i < numRemaining; i++) {
+                record(remaining[i], nextRank++);
+            }
+            return finish(coreStart);
+        }
+
+        /**
+         * Checks whether the remaining vertices average more than
+         * {@link #CORE_DEGREE} out-edges.
+         */
+        boolean isDense(int[] remaining, int numRemaining) {
+            long edges = 0;
+            for (int i = 0; i < numRemaining; i++) {
+                edges += out[remaining[i]].size;
+            }
+            return edges > (long) CORE_DEGREE * numRemaining;
+        }
+
+        /**
+         * Runs a loop body over the first {@code count} entries of an array,
+         * in parallel when there is a pool.
+         */
+        void forEach(int[] vertices, int count, IntConsumer body) {
+            run(count, (from, to) -> {
+                for (int i = from; i < to; i++) {
+                    body.accept(vertices[i]);
+                }
+            });
+        }
+
+        void run(int count, RangeTask.Range range) {
+            if (pool == null || count <= CONTRACTION_GRAIN) {
+                range.run(0, count);
+            } else {
+                pool.invoke(new RangeTask(0, count, CONTRACTION_GRAIN, range));
+            }
+        }
+
+        /**
+         * Estimates how late a vertex should be contracted.
+         */
+        int priority(int v) {
+            int added = shortcuts(v, false, null);
+            int removed = in[v].size + out[v].size;
+            return 2 * (added - removed) + deletedNeighbours[v] + level[v];
+        }
+
+        /**
+         * Checks whether a vertex is less important than every remaining
+         * neighbour, breaking ties by a hash of the ids so that rounds do
+         * not sweep the graph in id order.
+         */
+        boolean isLocalMinimum(int v) {
+            long key = key(v);
+            return isBelowAll(key, out[v]) && isBelowAll(key, in[v]);
+        }
+
+        boolean isBelowAll(long key, Adjacency neighbours) {
+            for (int i = 0; i < neighbours.size; i++) {
+                if (key(neighbours.vertices[i]) < key) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        long key(int v) {
+            return ((long) priority[v] << 32) | ((v * 0x9E3779B9) & 0xFFFFFFFFL);
+        }
+
+        /**
+         * Finds the shortcuts contracting a vertex needs: for every pair of
+         * an in-neighbour {@code u} and an out-neighbour {@code w}, one is
+         * needed unless a witness search from {@code u} that avoids the
+         * vertex reaches {@code w} no later than through it.
+         *
+         * @param v The vertex.
+         * @param excludeRound Whether witnesses must also avoid the other
+         * vertices of the round, which are contracted at the same time.
+         * @param into Receives {@code (u, w, weight)} triples, or null to
+         * only estimate their number with shorter witness searches.
+         * @return The number of shortcuts.
+         */
+        int shortcuts(int v, boolean excludeRound, IntList into) {
+            Adjacency ins = in[v];
+            Adjacency outs = out[v];
+            if (ins.size == 0 || outs.size == 0) {
+                return 0;
+            }
+            int count = 0;
+            SolverWorkspace workspace = workspaces.acquire(V);
+            try {
+                int[] mark = workspace.mark(0);
+                for (int i = 0; i < ins.size; i++) {
+                    int u = ins.vertices[i];
+                    int toV = ins.weights[i];
+                    // The search can stop once every out-neighbour is settled
+                    int stamp = workspace.nextStamp();
+                    int targets = 0;
+                    int maxOut = 0;
+                    for (int j = 0; j < outs.size; j++) {
+                        if (outs.vertices[j] != u) {
+                            mark[outs.vertices[j]] = stamp;
+                            targets++;
+                            maxOut = Math.max(maxOut, outs.weights[j]);
+                        }
+                    }
+                    if (targets == 0) {
+                        continue;
+                    }
+                    witnessSearch(workspace, u, v, excludeRound, (long) toV + maxOut, targets, stamp,
+                            into != null ? WITNESS_SETTLE_LIMIT : ESTIMATE_SETTLE_LIMIT);
+                    for (int j = 0; j < outs.size; j++) {
+                        int w = outs.vertices[j];
+                        if (w == u) {
+                            continue;
+                        }
+                        int via = Math.addExact(toV, outs.weights[j]);
+                        if (workspace.dist[w] > via) {
+                            count++;
+                            if (into != null) {
+                                into.add(u);
+                                into.add(w);
+                                into.add(via);
+                            }
+                        }
+                    }
+                }
+            } finally {
+                workspaces.release(workspace);
+            }
+            return count;
+        }
+
+        /**
+         * Runs Dijkstra's algorithm from {@code u} in the remaining graph
+         * without {@code v}, until the {@code targets} vertices stamped with
+         * {@code stamp} are settled, or up to distance {@code limit} or
+         * {@code settleLimit} settled vertices.
+         */
+        void witnessSearch(SolverWorkspace workspace, int u, int v, boolean excludeRound, long limit, int targets,
+                int stamp, int settleLimit) {
+            int[] mark = workspace.mark(0);
+            workspace.reset();
+            int[] dist = workspace.dist;
+            IndexedDaryHeap heap = workspace.heap(HEAP_ARITY);
+            dist[u] = 0;
+            workspace.touch(u);
+            heap.insertOrDecrease(u, 0);
+            int settled = 0;
+            while (!heap.isEmpty() && heap.minKey() <= limit && settled < settleLimit) {
+                int x = heap.pollMin();
+                settled++;
+                if (mark[x] == stamp && --targets == 0) {
+                    break;
+                }
+                int d = dist[x];
+                Adjacency edges = out[x];
+                for (int i = 0; i < edges.size; i++) {
+                    int y = edges.vertices[i];
+                    if (y == v || (excludeRound && inRound[y])) {
+                        continue;
+                    }
+                    int candidate = d + edges.weights[i];
+                    if (candidate < dist[y]) {
+                        dist[y] = candidate;
+                        workspace.touch(y);
+                        heap.insertOrDecrease(y, candidate);
+                    }
+                }
+            }
+            heap.clear();
+        }
+
+        /**
+         * Removes a vertex from the remaining graph, recording its edges,
+         * which all lead to vertices contracted later, in the hierarchy.
+         */
+        void contract(int v, IntList shortcuts, int r) {
+            record(v, r);
+            Adjacency outs = out[v];
+            Adjacency ins = in[v];
+            for (int j = 0; j < outs.size; j++) {
+                in[outs.vertices[j]].remove(v);
+                neighbourContracted(outs.vertices[j], v);
+            }
+            for (int i = 0; i < ins.size; i++) {
+                out[ins.vertices[i]].remove(v);
+                neighbourContracted(ins.vertices[i], v);
+            }
+            for (int i = 0; i < shortcuts.size(); i += 3) {
+                int u = shortcuts.get(i);
+                int w = shortcuts.get(i + 1);
+                out[u].insertOrDecrease(w, shortcuts.get(i + 2), v);
+                in[w].insertOrDecrease(u, shortcuts.get(i + 2), v);
+            }
+            numShortcuts += shortcuts.size() / 3;
+            out[v] = null;
+            in[v] = null;
+        }
+
+        /**
+         * Gives a vertex its rank and records its remaining edges in the
+         * hierarchy.
+         */
+        void record(int v, int r) {
+            rank[v] = r;
+            order[r] = v;
+            Adjacency outs = out[v];
+            Adjacency ins = in[v];
+            for (int j = 0; j < outs.size; j++) {
+                upTargets.add(outs.vertices[j]);
+                upWeights.add(outs.weights[j]);
+                upMiddles.add(outs.middles[j]);
+            }
+            upOffsets[r + 1] = upTargets.size();
+            for (int i = 0; i < ins.size; i++) {
+                downSources.add(ins.vertices[i]);
+                downWeights.add(ins.weights[i]);
+                downMiddles.add(ins.middles[i]);
+            }
+            downOffsets[r + 1] = downSources.size();
+        }
+
+        void neighbourContracted(int n, int v) {
+            deletedNeighbours[n]++;
+            level[n] = Math.max(level[n], level[v] + 1);
+            if (!dirty[n]) {
+                dirty[n] = true;
+                touched.add(n);
+            }
+        }
+
+        /**
+         * Translates the recorded edges from vertex ids to ranks.
+         */
+        ContractionHierarchy finish(int coreStart) {
+            int[] up = upTargets.toArray();
+            int[] upMid = upMiddles.toArray();
+            for (int e = 0; e < up.length; e++) {
+                up[e] = rank[up[e]];
+                upMid[e] = upMid[e] < 0 ? -1 : rank[upMid[e]];
+            }
+            int[] down = downSources.toArray();
+            int[] downMid = downMiddles.toArray();
+            for (int e = 0; e < down.length; e++) {
+                down[e] = rank[down[e]];
+                downMid[e] = downMid[e] < 0 ? -1 : rank[downMid[e]];
+            }
+            return new ContractionHierarchy(rank, order, upOffsets, up, upWeights.toArray(), upMid, downOffsets,
+                    down, downWeights.toArray(), downMid, coreStart, numShortcuts);
+        }
+    }
+}
+
+/**
+ * Exposes {@link ContractionHierarchy} as a {@link ShortestPathSolver}. The
+ * hierarchy of a graph is built on its first query, and again after the
+ * graph changes.
+ */
+class ContractionHierarchySolver implements ShortestPathSolver {
+
+    static final String NAME = "ch";
+
+    private final Map<CsrGraph, Prepared> prepared = Collections.synchronizedMap(new WeakHashMap<>());
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public ShortestPathResult solve(CsrGraph graph, int source, SolverOptions options) {
+        ShortestPathResult result = hierarchyOf(graph).solve(source);
+        if (!options.isOffHeapDistances()) {
+            return result;
+        }
+        return ShortestPathResult.copyOf(NAME, source, result.getDistances(), result.getPredecessors(), true);
+    }
+
+    @Override
+    public PointToPointResult query(CsrGraph graph, int source, int target, SolverOptions options) {
+        return hierarchyOf(graph).query(source, target);
+    }
+
+    /**
+     * Gets the hierarchy of a graph, building it if needed.
+     *
+     * @param graph The graph.
+     * @return The hierarchy the solver queries.
+     */
+    ContractionHierarchy hierarchyOf(CsrGraph graph) {
+        Prepared entry = prepared.get(graph);
+        if (entry == null || entry.version != graph.getVersion()) {
+            long version = graph.getVersion();
+            entry = new Prepared(version, ContractionHierarchy.build(graph));
+            prepared.put(graph, entry);
+        }
+        return entry.hierarchy;
+    }
+
+    private static class Prepared {
+
+        final long version;
+        final ContractionHierarchy hierarchy;
+
+        Prepared(long version, ContractionHierarchy hierarchy) {
+            this.version = version;
+            this.hierarchy = hierarchy;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package utexas.edu.shortestpathalgorithm;
+
+/**
+ * The read-only view of a directed graph in Compressed Sparse Row (CSR) form
+ * that the engines search. The outgoing edges of vertex {@code u} occupy the
+ * edge index range {@code [edgeStart(u), edgeEnd(u))}, ordered by ascending
+ * weight. Edge indices are {@code long} so that storage backends are not
+ * limited to 2^31 edges.
+ */
+public interface CsrGraph {
+
+    /**
+     * Returns the number of vertices in the graph.
+     *
+     * @return The number of vertices.
+     */
+    int getNumVertices();
+
+    /**
+     * Returns the number of directed edges in the graph.
+     *
+     * @return The number of edges.
+     */
+    long getNumEdges();
+
+    /**
+     * Returns the index of the first outgoing edge of a vertex.
+     *
+     * @param u The vertex.
+     * @return The first edge index of {@code u}.
+     */
+    long edgeStart(int u);
+
+    /**
+     * Returns one past the index of the last outgoing edge of a vertex.
+     *
+     * @param u The vertex.
+     * @return The end edge index of {@code u} (exclusive).
+     */
+    long edgeEnd(int u);
+
+    /**
+     * Returns the destination vertex of an edge.
+     *
+     * @param e The edge index.
+     * @return The destination vertex.
+     */
+    int target(long e);
+
+    /**
+     * Returns the weight of an edge.
+     *
+     * @param e The edge index.
+     * @return The edge weight.
+     */
+    int weight(long e);
+
+    /**
+     * Returns the largest edge weight in the graph, or 0 if it has no edges.
+     *
+     * @return The maximum edge weight.
+     */
+    int getMaxWeight();
+
+    /**
+     * Returns the sum of all edge weights.
+     *
+     * @return The total weight.
+     */
+    long getTotalWeight();
+
+    /**
+     * Returns a number that changes whenever the edges of the graph do.
+     * Graphs that cannot be modified always return 0.
+     *
+     * @return The version.
+     */
+    default long getVersion() {
+        return 0;
+    }
+
+    /**
+     * Returns the transposed graph, in which every edge points the other way.
+     *
+     * @return The reverse graph.
+     */
+    CsrGraph reverse();
+
+    /**
+     * Returns the number of outgoing edges of a vertex.
+     *
+     * @param u The vertex.
+     * @return The out-degree of {@code u}.
+     */
+    default int degree(int u) {
+        return (int) (edgeEnd(u) - edgeStart(u));
+    }
+
+    /**
+     * Returns the mean edge weight, or 0 if the graph has no edges.
+     *
+     * @return The average edge weight.
+     */
+    default double getAverageWeight() {
+        long E = getNumEdges();
+        return E == 0 ? 0 : (double) getTotalWeight() / E;
+    }
+
+    /**
+     * Returns the mean out-degree, or 0 if the graph has no vertices.
+     *
+     * @return The average out-degree.
+     */
+    default double getAverageDegree() {
+        int V = getNumVertices();
+        return V == 0 ? 0 : (double) getNumEdges() / V;
+    }
+
+    /**
+     * Returns the index of the first outgoing edge of a vertex whose weight
+     * exceeds the given bound. The edges in {@code [edgeStart(u), result)}
+     * all have weight at most {@code bound}.
+     *
+     * @param u The vertex.
+     * @param bound The weight bound.
+     * @return The first edge index of {@code u} heavier than {@code bound}.
+     */
+    default long edgeUpperBound(int u, int bound) {
+        long lo = edgeStart(u);
+        long hi = edgeEnd(u);
+        while (lo < hi) {
+            long mid = (lo + hi) >>> 1;
+            if (weight(mid) <= bound) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
@@ -7,22 +7,44 @@ package utexas.edu.shortestpathalgorithm;
 
 import java.util.*;
 import java.util.concurrent.ForkJoinPool;
-import java.util.concurrent.RecursiveAction;
-import java.util.concurrent.TimeUnit;
 
 /**
  * Implements the Delta Stepping algorithm for finding shortest paths in a
- * graph.
+ * graph. Vertices are kept in a cyclic array of buckets indexed by
+ * {@code (dist - base) / delta}. Light edges (weight at most delta) are
+ * relaxed repeatedly until the current bucket stays empty, then the heavy
+ * edges of every vertex settled in that bucket are relaxed once.
+ *
+ * <p>When delta is left to the algorithm it is adapted between buckets by a
+ * {@link StepTuner}. Every change moves {@code base} up to the end of the
+ * bucket just finished, below which all distances are final, and files the
+ * queued vertices into buckets of the new width.
  */
 class DeltaStepping {
 
-    private final Graph graph;
+    /**
+     * Buckets between adjustments of an adaptive delta.
+     */
+    private static final int ADAPT_WINDOW = 4;
+
+    private final CsrGraph graph;
     private final int source;
-    private final int[] dist;
+    private final SolverWorkspace workspace;
+    private final long[] state;
 
-    private int max_dist;
+    private int delta;
+    private int base;
 
-    private LinkedList<Integer> queue;
+    private IntList[] buckets;
+    private int numBuckets;
+    private int pending;
+    private int settledCount;
+
+    private SolverMetrics metrics;
+
+    // Stamps that deduplicate a vertex within the current phase and bucket
+    private final int[] phaseMark;
+    private final int[] settledMark;
 
     /**
      * Initializes the DeltaStepping algorithm with the given graph and source
@@ -31,84 +53,295 @@ class DeltaStepping {
      * @param graph The graph to find shortest paths in.
      * @param source The source node.
      */
-    public DeltaStepping(Graph graph, int source) {
+    public DeltaStepping(CsrGraph graph, int source) {
+        this(graph, source, new SolverWorkspace(graph.getNumVertices()));
+    }
+
+    /**
+     * Initializes the DeltaStepping algorithm on a reused workspace. The
+     * distances of the workspace's previous query are discarded.
+     *
+     * @param graph The graph to find shortest paths in.
+     * @param source The source node.
+     * @param workspace A workspace sized for {@code graph}.
+     */
+    public DeltaStepping(CsrGraph graph, int source, SolverWorkspace workspace) {
         this.graph = graph;
         this.source = source;
-        this.dist = new int[graph.getAdjacencyList().length];
-        queue = new LinkedList<>();
-        Arrays.fill(dist, Integer.MAX_VALUE); // Initialize distances to infinity
+        this.workspace = workspace;
+        workspace.reset();
+        this.state = workspace.state;
+        this.phaseMark = workspace.mark(0);
+        this.settledMark = workspace.mark(1);
+    }
+
+    /**
+     * Sets the metrics that following runs record into. Without metrics the
+     * engine reads no clocks and updates no counters.
+     *
+     * @param metrics The metrics, or {@code null} to collect none.
+     */
+    public void setMetrics(SolverMetrics metrics) {
+        this.metrics = metrics;
     }
 
     /**
      * Runs the Delta Stepping algorithm with the specified delta value.
      *
-     * @param delta The delta value for the algorithm.
+     * @param delta The delta value for the algorithm, or
+     * {@link SolverOptions#AUTO} to derive it from the graph and adapt it
+     * between buckets.
      */
     public void deltaStep(int delta, boolean runInParallel) {
-        int numThreads = runInParallel ? Runtime.getRuntime().availableProcessors() : 1;
-        ForkJoinPool pool = new ForkJoinPool(numThreads);
-
-        queue.add(source);
-        dist[source] = 0; // Set the source node's distance to 0
-        max_dist = delta;
-
-        boolean next_section = true;
-        while (!queue.isEmpty()) {
-            LinkedList<Integer> nodes = queue;
-            queue = new LinkedList<>();
-            for (Integer n: nodes) {
-                pool.invoke(new DeltaStepTask(n));
-            }
-            while(true) {if (pool.awaitQuiescence(100, TimeUnit.SECONDS)) break;};
+        deltaStep(delta, runInParallel ? SolverPool.shared() : null);
+    }
 
+    /**
+     * Runs the Delta Stepping algorithm on the given pool.
+     *
+     * @param delta The delta value for the algorithm, or
+     * {@link SolverOptions#AUTO} to adapt it.
+     * @param pool The pool to relax frontiers on, or {@code null} to run on
+     * the calling thread.
+     */
+    public void deltaStep(int delta, ForkJoinPool pool) {
+        deltaStep(delta, pool, -1);
+    }
 
-            while (queue.isEmpty() && next_section) {
-                next_section = false;
-                for (int i = 0; i < dist.length; i++) {
-                    if (max_dist < dist[i] && dist[i] < max_dist + delta) {
-                        queue.add(i);
-                    } else if (dist[i] > max_dist && dist[i] != Integer.MAX_VALUE) {
-                        next_section = true;
+    /**
+     * Runs the Delta Stepping algorithm on the given pool until the bucket
+     * holding {@code target} has been processed. Distances are final for
+     * every vertex no farther than the target; the rest are upper bounds.
+     *
+     * @param delta The delta value for the algorithm, or
+     * {@link SolverOptions#AUTO} to adapt it.
+     * @param pool The pool to relax frontiers on, or {@code null} to run on
+     * the calling thread.
+     * @param target The node to stop at, or -1 to compute all distances.
+     */
+    public void deltaStep(int delta, ForkJoinPool pool, int target) {
+        StepTuner tuner = null;
+        if (delta == SolverOptions.AUTO) {
+            tuner = new StepTuner(StepTuner.initialDelta(graph), 1, Math.max(1, graph.getMaxWeight()), ADAPT_WINDOW,
+                    StepTuner.targetFrontier(pool, FrontierRelaxer.verticesPerLeaf(graph)));
+            delta = (int) tuner.get();
+        } else if (delta < 0) {
+            throw new IllegalArgumentException("delta must be positive: " + delta);
+        }
+        this.delta = delta;
+        this.base = 0;
+        long runStart = metrics == null ? 0 : System.nanoTime();
+
+        // A tentative distance is never more than maxWeight past the bucket
+        // being processed, so this many buckets can be reused cyclically
+        numBuckets = graph.getMaxWeight() / delta + 2;
+        buckets = workspace.buckets(numBuckets);
+        pending = 0;
+        settledCount = 0;
+
+        state[source] = Relaxation.pack(0, -1); // Set the source node's distance to 0
+        insert(source);
+
+        IntList frontier = workspace.frontier;
+        IntList settled = workspace.settled;
+        IntList improved = workspace.improved;
+
+        for (int current = 0; pending > 0; current++) {
+            IntList bucket = buckets[current % numBuckets];
+            settled.clear();
+            int settledStamp = workspace.nextStamp();
+            int relaxedCount = 0;
+            int passes = 0;
+            long phaseStart = metrics == null ? 0 : System.nanoTime();
+
+            while (!bucket.isEmpty()) {
+                // Drop entries that moved to an earlier bucket or were queued twice
+                int phase = workspace.nextStamp();
+                frontier.clear();
+                for (int i = 0; i < bucket.size(); i++) {
+                    int v = bucket.get(i);
+                    if (bucketOf(Relaxation.distance(state[v])) == current && phaseMark[v] != phase) {
+                        phaseMark[v] = phase;
+                        frontier.add(v);
+                        if (settledMark[v] != settledStamp) {
+                            settledMark[v] = settledStamp;
+                            settled.add(v);
+                        }
                     }
                 }
-                max_dist += delta;
+                pending -= bucket.size();
+                bucket.clear();
+                if (metrics != null) {
+                    phaseStart = metrics.recordPhase(SolverMetrics.Phase.SELECT, phaseStart);
+                }
+
+                relax(frontier, true, pool, improved);
+                relaxedCount += frontier.size();
+                passes++;
+                if (metrics != null) {
+                    phaseStart = metrics.recordPhase(SolverMetrics.Phase.RELAX, phaseStart);
+                }
+            }
+            settledCount += settled.size();
+            if (metrics != null) {
+                metrics.recordStep(settled.isEmpty());
+            }
+
+            // Light relaxations have converged, so this bucket's distances are final
+            if (target >= 0 && bucketOf(Relaxation.distance(state[target])) == current) {
+                break;
+            }
+            relax(settled, false, pool, improved);
+            if (metrics != null) {
+                metrics.recordPhase(SolverMetrics.Phase.HEAVY, phaseStart);
+            }
+
+            if (tuner != null && tuner.record(relaxedCount, settled.size(), passes) && pending > 0) {
+                rebucket((int) tuner.get(), current);
+                current = -1;
             }
         }
-        pool.shutdown();
+        workspace.unpackState();
+        if (metrics != null) {
+            metrics.recordRun(settledCount, System.nanoTime() - runStart);
+        }
     }
 
-    private class DeltaStepTask extends RecursiveAction {
+    /**
+     * Gets the delta the last run ended with, which differs from the one it
+     * started with if it was adapted.
+     *
+     * @return The final delta.
+     */
+    int getDelta() {
+        return delta;
+    }
 
-        private final int node;
+    private int bucketOf(int distance) {
+        return (distance - base) / delta;
+    }
 
-        DeltaStepTask(int node) {
-            this.node = node;
+    /**
+     * Switches to a new delta after bucket {@code current} was processed.
+     * Every queued vertex lies beyond that bucket, so numbering restarts at
+     * its end and the queued vertices are filed again, dropping entries that
+     * are stale or repeated.
+     */
+    private void rebucket(int newDelta, int current) {
+        IntList queued = workspace.frontier;
+        queued.clear();
+        for (int i = 0; i < numBuckets; i++) {
+            queued.addAll(buckets[i]);
+            buckets[i].clear();
         }
+        base += (current + 1) * delta;
+        delta = newDelta;
+        numBuckets = graph.getMaxWeight() / delta + 2;
+        buckets = workspace.buckets(numBuckets);
+        pending = 0;
+
+        int phase = workspace.nextStamp();
+        for (int i = 0; i < queued.size(); i++) {
+            int v = queued.get(i);
+            if (Relaxation.distance(state[v]) >= base && phaseMark[v] != phase) {
+                phaseMark[v] = phase;
+                insert(v);
+            }
+        }
+    }
 
-        @Override
-        protected void compute() {
-            for (Edge edge : graph.getAdjacencyList()[node]) {
-                int neighbour = edge.dest;
-                int weight = edge.weight;
+    /**
+     * Gets the number of vertices settled by the last run.
+     *
+     * @return The number of settled vertices.
+     */
+    int getSettledCount() {
+        return settledCount;
+    }
 
-                if (dist[node] + weight < dist[neighbour]) {
-                    dist[neighbour] = dist[node] + weight;
-                    if (dist[neighbour] < max_dist) {
-                        queue.add(neighbour);
-                    }
-                }
-            }
+    /**
+     * Relaxes the light or heavy edges of every node in {@code nodes} and
+     * files each improved neighbour into the bucket of its new distance.
+     */
+    private void relax(IntList nodes, boolean light, ForkJoinPool pool, IntList improved) {
+        workspace.relaxer().relax(graph, nodes, light ? FrontierRelaxer.Edges.LIGHT : FrontierRelaxer.Edges.HEAVY,
+                delta, pool, metrics, improved);
+        for (int i = 0; i < improved.size(); i++) {
+            insert(improved.get(i));
         }
     }
 
+    private void insert(int v) {
+        workspace.touch(v);
+        buckets[bucketOf(Relaxation.distance(state[v])) % numBuckets].add(v);
+        pending++;
+    }
+
     /**
      * Gets the computed shortest distances from the source node to all other
-     * nodes.
+     * nodes. When running on a reused workspace the array belongs to it and
+     * is overwritten by its next query.
      *
      * @return An array of shortest distances.
      */
     public int[] getShortestDistances() {
-        return dist;
+        return workspace.dist;
+    }
+
+    /**
+     * Gets the predecessor of every node on its shortest path from the source
+     * node, or -1 for the source and unreachable nodes. Shares the lifetime
+     * of {@link #getShortestDistances()}.
+     *
+     * @return An array of predecessors.
+     */
+    public int[] getPredecessors() {
+        return workspace.predecessors;
+    }
+}
+
+/**
+ * Exposes {@link DeltaStepping} as a {@link ShortestPathSolver}.
+ */
+class DeltaSteppingSolver implements ShortestPathSolver {
+
+    static final String NAME = "delta";
+
+    private final WorkspacePool workspaces = new WorkspacePool();
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public ShortestPathResult solve(CsrGraph graph, int source, SolverOptions options) {
+        SolverWorkspace workspace = workspaces.acquire(graph);
+        try {
+            DeltaStepping deltaStepping = new DeltaStepping(graph, source, workspace);
+            deltaStepping.setMetrics(options.getMetrics());
+            deltaStepping.deltaStep(options.getDelta(), options.isRunInParallel());
+            return ShortestPathResult.copyOf(NAME, source, deltaStepping.getShortestDistances(),
+                    deltaStepping.getPredecessors(), options.isOffHeapDistances());
+        } finally {
+            workspaces.release(workspace);
+        }
+    }
+
+    @Override
+    public PointToPointResult query(CsrGraph graph, int source, int target, SolverOptions options) {
+        SolverWorkspace workspace = workspaces.acquire(graph);
+        try {
+            DeltaStepping deltaStepping = new DeltaStepping(graph, source, workspace);
+            deltaStepping.setMetrics(options.getMetrics());
+            deltaStepping.deltaStep(options.getDelta(), options.isRunInParallel() ? SolverPool.shared() : null, target);
+            int distance = deltaStepping.getShortestDistances()[target];
+            int[] path = ShortestPathResult.tracePath(deltaStepping.getPredecessors(), source, target,
+                    distance != Integer.MAX_VALUE);
+            return new PointToPointResult(NAME, source, target, distance, path, deltaStepping.getSettledCount());
+        } finally {
+            workspaces.release(workspace);
+        }
     }
 }
 
@@ -142,43 +375,8 @@ public class DeltaSteppingMain {
     }
 
     public static long runDeltaStepping(int[][] edges, int source, int delta, boolean outputShortestPath, boolean runInParallel) {
-        int numVertices = Arrays.stream(edges)
-                .flatMapToInt(Arrays::stream)
-                .max()
-                .orElse(0) + 1;
-
-        // Add edges to the graph
-        Graph graph = new Graph(numVertices);
-        for (int[] edge : edges) {
-            graph.addEdge(edge[0], edge[1], edge[2]);
-        }
-
-        // Run the Delta Stepping algorithm
-        DeltaStepping deltaStepping = new DeltaStepping(graph, source);
-
-        long startTime = System.currentTimeMillis(); // Record start time
-        deltaStepping.deltaStep(delta, runInParallel);
-        long endTime = System.currentTimeMillis(); // Record end time
-
-        int[] shortestDistances = deltaStepping.getShortestDistances();
-
-        if (outputShortestPath) {
-            // Print the shortest distances and execution time
-            System.out.println("Shortest distances from node " + source + ":");
-            for (int i = 0; i < numVertices; i++) {
-                System.out.println("Node " + i + ": " + shortestDistances[i]);
-            }
-        }
-
-
-        long executionTime = endTime - startTime;
-        long totaDistance = 0;
-        for (int i = 0; i < numVertices; i++) {
-            totaDistance += shortestDistances[i];
-        }
-        System.out.println("Execution time: " + executionTime + " milliseconds | Total Distance: " + totaDistance + "\n");
-
-        return executionTime;
+        SolverOptions options = SolverOptions.defaults().withDelta(delta).withParallel(runInParallel);
+        return ShortestPathCompare.runSolver(new DeltaSteppingSolver(), Graph.fromEdges(edges), source, options, outputShortestPath);
     }
 
     public static long runDeltaStepping(int numVertices, int maxWeight, int source, int delta, boolean outputShortestPath, boolean runInParallel) {
@@ -186,22 +384,11 @@ public class DeltaSteppingMain {
         return runDeltaStepping(edges.toArray(new int[0][]), source, delta, outputShortestPath, runInParallel);
     }
 
+    /**
+     * Builds a complete graph as an edge list; see
+     * {@link ShortestPathCompare#generateRandomConnectedGraph(int, int)}.
+     */
     public static List<int[]> generateRandomConnectedGraph(int numVertices, int maxWeight) {
-        List<int[]> edges = new ArrayList<>();
-        Random random = new Random();
-
-        // Create a fully connected graph
-        for (int u = 0; u < numVertices; u++) {
-            for (int v = u + 1; v < numVertices; v++) {
-                int weight = random.nextInt(maxWeight) + 1; // Generate a random weight
-                edges.add(new int[]{u, v, weight});
-                edges.add(new int[]{v, u, weight}); // Add reverse edge for undirected graph
-            }
-        }
-
-        // Shuffle the edges randomly to create a random connected graph
-        Collections.shuffle(edges);
-
-        return edges;
+        return new ArrayList<>(Arrays.asList(ShortestPathCompare.generateRandomConnectedGraph(numVertices, maxWeight)));
     }
 }
@@ -0,0 +1,173 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package utexas.edu.shortestpathalgorithm;
+
+/**
+ * Implements Dijkstra's algorithm for finding shortest paths in a graph on a
+ * single thread. Serves as the serial baseline and correctness oracle for
+ * the parallel stepping algorithms.
+ */
+class Dijkstra {
+
+    /**
+     * Children per heap node. A 4-ary heap is shallower than a binary heap
+     * and keeps a node's children within one cache line.
+     */
+    private static final int HEAP_ARITY = 4;
+
+    private final CsrGraph graph;
+    private final int source;
+    private final SolverWorkspace workspace;
+    private final int[] dist;
+    private final int[] predecessors;
+    private final IndexedDaryHeap heap;
+    private int settledCount;
+
+    /**
+     * Initializes Dijkstra's algorithm with the given graph and source node.
+     *
+     * @param graph The graph to find shortest paths in.
+     * @param source The source node.
+     */
+    public Dijkstra(CsrGraph graph, int source) {
+        this(graph, source, new SolverWorkspace(graph.getNumVertices()));
+    }
+
+    /**
+     * Initializes Dijkstra's algorithm on a reused workspace. The distances
+     * of the workspace's previous query are discarded.
+     *
+     * @param graph The graph to find shortest paths in.
+     * @param source The source node.
+     * @param workspace A workspace sized for {@code graph}.
+     */
+    public Dijkstra(CsrGraph graph, int source, SolverWorkspace workspace) {
+        this.graph = graph;
+        this.source = source;
+        this.workspace = workspace;
+        workspace.reset();
+        this.dist = workspace.dist;
+        this.predecessors = workspace.predecessors;
+        this.heap = workspace.heap(HEAP_ARITY);
+    }
+
+    /**
+     * Runs Dijkstra's algorithm from the source node.
+     */
+    public void run() {
+        run(-1);
+    }
+
+    /**
+     * Runs Dijkstra's algorithm from the source node until {@code target} is
+     * settled. Distances are final for every settled vertex; the rest are
+     * upper bounds.
+     *
+     * @param target The node to stop at, or -1 to compute all distances.
+     */
+    public void run(int target) {
+        dist[source] = 0; // Set the source node's distance to 0
+        workspace.touch(source);
+        heap.insertOrDecrease(source, 0);
+        settledCount = 0;
+
+        while (!heap.isEmpty()) {
+            int node = heap.pollMin();
+            settledCount++;
+            if (node == target) {
+                heap.clear();
+                break;
+            }
+            int d = dist[node];
+            for (long e = graph.edgeStart(node), end = graph.edgeEnd(node); e < end; e++) {
+                int neighbour = graph.target(e);
+                int candidate = d + graph.weight(e);
+
+                if (candidate < dist[neighbour]) {
+                    dist[neighbour] = candidate;
+                    predecessors[neighbour] = node;
+                    workspace.touch(neighbour);
+                    heap.insertOrDecrease(neighbour, candidate);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the number of vertices settled by the last run.
+     *
+     * @return The number of settled vertices.
+     */
+    int getSettledCount() {
+        return settledCount;
+    }
+
+    /**
+     * Gets the computed shortest distances from the source node to all other
+     * nodes. When running on a reused workspace the array belongs to it and
+     * is overwritten by its next query.
+     *
+     * @return An array of shortest distances.
+     */
+    public int[] getShortestDistances() {
+        return dist;
+    }
+
+    /**
+     * Gets the predecessor of every node on its shortest path from the source
+     * node, or -1 for the source and unreachable nodes. Shares the lifetime
+     * of {@link #getShortestDistances()}.
+     *
+     * @return An array of predecessors.
+     */
+    public int[] getPredecessors() {
+        return predecessors;
+    }
+}
+
+/**
+ * Exposes {@link Dijkstra} as a {@link ShortestPathSolver}. Always runs on
+ * the calling thread.
+ */
+class DijkstraSolver implements ShortestPathSolver {
+
+    static final String NAME = "dijkstra";
+
+    private final WorkspacePool workspaces = new WorkspacePool();
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public ShortestPathResult solve(CsrGraph graph, int source, SolverOptions options) {
+        SolverWorkspace workspace = workspaces.acquire(graph);
+        try {
+            Dijkstra dijkstra = new Dijkstra(graph, source, workspace);
+            dijkstra.run();
+            return ShortestPathResult.copyOf(NAME, source, dijkstra.getShortestDistances(),
+                    dijkstra.getPredecessors(), options.isOffHeapDistances());
+        } finally {
+            workspaces.release(workspace);
+        }
+    }
+
+    @Override
+    public PointToPointResult query(CsrGraph graph, int source, int target, SolverOptions options) {
+        SolverWorkspace workspace = workspaces.acquire(graph);
+        try {
+            Dijkstra dijkstra = new Dijkstra(graph, source, workspace);
+            dijkstra.run(target);
+            int distance = dijkstra.getShortestDistances()[target];
+            int[] path = ShortestPathResult.tracePath(dijkstra.getPredecessors(), source, target,
+                    distance != Integer.MAX_VALUE);
+            return new PointToPointResult(NAME, source, target, distance, path, dijkstra.getSettledCount());
+        } finally {
+            workspaces.release(workspace);
+        }
+    }
+}
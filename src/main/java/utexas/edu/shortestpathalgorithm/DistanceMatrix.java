@@ -0,0 +1,68 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package utexas.edu.shortestpathalgorithm;
+
+/**
+ * The outcome of a batch of single-source queries on one graph: one row of
+ * distances per source, in the order the sources were given.
+ */
+public class DistanceMatrix {
+
+    private final int[] sources;
+    private final int[][] rows;
+
+    /**
+     * Initializes a distance matrix.
+     *
+     * @param sources The source of every row.
+     * @param rows The shortest distance from each source to every vertex,
+     * {@link Integer#MAX_VALUE} where unreachable.
+     */
+    public DistanceMatrix(int[] sources, int[][] rows) {
+        this.sources = sources;
+        this.rows = rows;
+    }
+
+    /**
+     * Gets the number of sources, which is the number of rows.
+     *
+     * @return The number of sources.
+     */
+    public int getNumSources() {
+        return sources.length;
+    }
+
+    /**
+     * Gets the source of a row.
+     *
+     * @param row The row index.
+     * @return The source node.
+     */
+    public int getSource(int row) {
+        return sources[row];
+    }
+
+    /**
+     * Gets the shortest distance from the source of a row to a vertex.
+     *
+     * @param row The row index.
+     * @param v The vertex.
+     * @return The distance, or {@link Integer#MAX_VALUE} if unreachable.
+     */
+    public int getDistance(int row, int v) {
+        return rows[row][v];
+    }
+
+    /**
+     * Gets the shortest distances from the source of a row to all vertices.
+     *
+     * @param row The row index.
+     * @return An array of shortest distances.
+     */
+    public int[] getDistances(int row) {
+        return rows[row];
+    }
+}
@@ -0,0 +1,454 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package utexas.edu.shortestpathalgorithm;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A directed graph with a fixed number of vertices whose edges can be
+ * inserted, deleted and reweighted in place. Every vertex owns a block of
+ * edge slots with some spare capacity, kept sorted by weight, so it can be
+ * searched by any engine through {@link CsrGraph}; a block that fills up is
+ * moved to the end of the arrays with twice the room. Incoming edges are kept
+ * the same way for {@link #reverse()} and for repairing shortest paths.
+ *
+ * <p>Edge indices change when the graph changes, so the graph must not be
+ * modified while a query is running on it. After deletions and weight
+ * decreases {@link #getMaxWeight()} may exceed the actual largest weight;
+ * it never falls below it, which is all the engines need.
+ */
+public final class DynamicGraph implements CsrGraph {
+
+    private final int V;
+    private final Adjacency out;
+    private final Adjacency in;
+    private final CsrGraph reverse;
+    private long E;
+    private long totalWeight;
+    private int maxWeight;
+    private long version;
+
+    private final List<EdgeChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Initializes a graph with the given number of vertices and no edges.
+     *
+     * @param V The number of vertices in the graph.
+     */
+    public DynamicGraph(int V) {
+        this.V = V;
+        this.out = new Adjacency(V);
+        this.in = new Adjacency(V);
+        this.reverse = new ReverseView();
+    }
+
+    /**
+     * Initializes a graph holding a copy of the edges of another graph.
+     *
+     * @param graph The graph to copy.
+     */
+    public DynamicGraph(CsrGraph graph) {
+        this(graph.getNumVertices());
+        CsrGraph transposed = graph.reverse();
+        out.copyFrom(graph);
+        in.copyFrom(transposed);
+        this.E = graph.getNumEdges();
+        this.totalWeight = graph.getTotalWeight();
+        this.maxWeight = graph.getMaxWeight();
+    }
+
+    /**
+     * Adds an edge. Parallel edges are allowed.
+     *
+     * @param u The source vertex.
+     * @param v The destination vertex.
+     * @param weight The non-negative weight.
+     */
+    public void insertEdge(int u, int v, int weight) {
+        checkVertex(u);
+        checkVertex(v);
+        checkWeight(weight);
+        out.insert(u, v, weight);
+        in.insert(v, u, weight);
+        E++;
+        totalWeight += weight;
+        maxWeight = Math.max(maxWeight, weight);
+        changed(u, v, Integer.MAX_VALUE, weight);
+    }
+
+    /**
+     * Removes an edge. If there are parallel edges from {@code u} to
+     * {@code v}, the lightest is removed.
+     *
+     * @param u The source vertex.
+     * @param v The destination vertex.
+     * @return The weight of the removed edge.
+     * @throws IllegalArgumentException If there is no edge from {@code u} to
+     * {@code v}.
+     */
+    public int deleteEdge(int u, int v) {
+        checkVertex(u);
+        checkVertex(v);
+        int weight = out.remove(u, v);
+        if (weight < 0) {
+            throw new IllegalArgumentException("No edge from " + u + " to " + v);
+        }
+        in.remove(v, u, weight);
+        E--;
+        totalWeight -= weight;
+        changed(u, v, weight, Integer.MAX_VALUE);
+        return weight;
+    }
+
+    /**
+     * Changes the weight of an edge. If there are parallel edges from
+     * {@code u} to {@code v}, the lightest is changed.
+     *
+     * @param u The source vertex.
+     * @param v The destination vertex.
+     * @param weight The new non-negative weight.
+     * @return The previous weight.
+     * @throws IllegalArgumentException If there is no edge from {@code u} to
+     * {@code v}.
+     */
+    public int updateWeight(int u, int v, int weight) {
+        checkVertex(u);
+        checkVertex(v);
+        checkWeight(weight);
+        int previous = out.remove(u, v);
+        if (previous < 0) {
+            throw new IllegalArgumentException("No edge from " + u + " to " + v);
+        }
+        in.remove(v, u, previous);
+        out.insert(u, v, weight);
+        in.insert(v, u, weight);
+        totalWeight += weight - previous;
+        maxWeight = Math.max(maxWeight, weight);
+        changed(u, v, previous, weight);
+        return previous;
+    }
+
+    /**
+     * Gets the number of modifications made to the graph since it was
+     * created. Results computed at one version are valid until the next.
+     *
+     * @return The version.
+     */
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Registers a listener to be told about every subsequent modification,
+     * on the modifying thread, after the graph has been updated.
+     *
+     * @param listener The listener.
+     */
+    void addListener(EdgeChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Stops telling a listener about modifications.
+     *
+     * @param listener The listener.
+     */
+    void removeListener(EdgeChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void changed(int u, int v, int oldWeight, int newWeight) {
+        version++;
+        for (EdgeChangeListener listener : listeners) {
+            listener.edgeChanged(u, v, oldWeight, newWeight);
+        }
+    }
+
+    private void checkVertex(int v) {
+        if (v < 0 || v >= V) {
+            throw new IllegalArgumentException("Vertex out of range: " + v);
+        }
+    }
+
+    private static void checkWeight(int weight) {
+        if (weight < 0) {
+            throw new IllegalArgumentException("Weight must be non-negative: " + weight);
+        }
+    }
+
+    @Override
+    public int getNumVertices() {
+        return V;
+    }
+
+    @Override
+    public long getNumEdges() {
+        return E;
+    }
+
+    @Override
+    public long edgeStart(int u) {
+        return out.start[u];
+    }
+
+    @Override
+    public long edgeEnd(int u) {
+        return out.start[u] + out.degree[u];
+    }
+
+    @Override
+    public int degree(int u) {
+        return out.degree[u];
+    }
+
+    @Override
+    public int target(long e) {
+        return out.targets[(int) e];
+    }
+
+    @Override
+    public int weight(long e) {
+        return out.weights[(int) e];
+    }
+
+    @Override
+    public int getMaxWeight() {
+        return maxWeight;
+    }
+
+    @Override
+    public long getTotalWeight() {
+        return totalWeight;
+    }
+
+    /**
+     * Returns a view of the graph in which every edge points the other way.
+     * The view follows later modifications of this graph.
+     *
+     * @return The reverse graph.
+     */
+    @Override
+    public CsrGraph reverse() {
+        return reverse;
+    }
+
+    /**
+     * Receives the modifications of a {@link DynamicGraph}. An inserted edge
+     * is reported as a decrease from {@link Integer#MAX_VALUE}, a deleted
+     * edge as an increase to it.
+     */
+    interface EdgeChangeListener {
+
+        /**
+         * Called after the weight of an edge changed.
+         *
+         * @param u The source vertex.
+         * @param v The destination vertex.
+         * @param oldWeight The previous weight, or {@link Integer#MAX_VALUE}
+         * if the edge was inserted.
+         * @param newWeight The new weight, or {@link Integer#MAX_VALUE} if the
+         * edge was deleted.
+         */
+        void edgeChanged(int u, int v, int oldWeight, int newWeight);
+    }
+
+    private class ReverseView implements CsrGraph {
+
+        @Override
+        public int getNumVertices() {
+            return V;
+        }
+
+        @Override
+        public long getNumEdges() {
+            return E;
+        }
+
+        @Override
+        public long edgeStart(int u) {
+            return in.start[u];
+        }
+
+        @Override
+        public long edgeEnd(int u) {
+            return in.start[u] + in.degree[u];
+        }
+
+        @Override
+        public int degree(int u) {
+            return in.degree[u];
+        }
+
+        @Override
+        public int target(long e) {
+            return in.targets[(int) e];
+        }
+
+        @Override
+        public int weight(long e) {
+            return in.weights[(int) e];
+        }
+
+        @Override
+        public int getMaxWeight() {
+            return maxWeight;
+        }
+
+        @Override
+        public long getTotalWeight() {
+            return totalWeight;
+        }
+
+        @Override
+        public long getVersion() {
+            return version;
+        }
+
+        @Override
+        public CsrGraph reverse() {
+            return DynamicGraph.this;
+        }
+    }
+
+    /**
+     * One direction of adjacency: per-vertex blocks of slots in shared
+     * arrays, each holding {@code degree} edges sorted by weight followed by
+     * free slots.
+     */
+    private static final class Adjacency {
+
+        private static final int MIN_CAPACITY = 4;
+
+        final int[] start;
+        final int[] degree;
+        final int[] capacity;
+        int[] targets = new int[0];
+        int[] weights = new int[0];
+        private int size;
+        private int wasted;
+
+        Adjacency(int V) {
+            start = new int[V];
+            degree = new int[V];
+            capacity = new int[V];
+        }
+
+        void copyFrom(CsrGraph graph) {
+            int V = start.length;
+            long slots = 0;
+            for (int u = 0; u < V; u++) {
+                slots += initialCapacity(graph.degree(u));
+            }
+            targets = new int[Math.toIntExact(slots)];
+            weights = new int[targets.length];
+            for (int u = 0; u < V; u++) {
+                int count = graph.degree(u);
+                start[u] = size;
+                degree[u] = count;
+                capacity[u] = initialCapacity(count);
+                long e = graph.edgeStart(u);
+                for (int i = 0; i < count; i++) {
+                    targets[size + i] = graph.target(e + i);
+                    weights[size + i] = graph.weight(e + i);
+                }
+                size += capacity[u];
+            }
+        }
+
+        private static int initialCapacity(int degree) {
+            return degree == 0 ? 0 : degree + Math.max(2, degree >>> 2);
+        }
+
+        void insert(int u, int v, int weight) {
+            if (degree[u] == capacity[u]) {
+                grow(u);
+            }
+            // Insert after the edges of equal or smaller weight
+            int from = start[u];
+            int slot = from + degree[u];
+            while (slot > from && weights[slot - 1] > weight) {
+                targets[slot] = targets[slot - 1];
+                weights[slot] = weights[slot - 1];
+                slot--;
+            }
+            targets[slot] = v;
+            weights[slot] = weight;
+            degree[u]++;
+        }
+
+        /**
+         * Removes the lightest edge from {@code u} to {@code v}.
+         *
+         * @return Its weight, or -1 if there is none.
+         */
+        int remove(int u, int v) {
+            return remove(u, v, -1);
+        }
+
+        /**
+         * Removes an edge from {@code u} to {@code v}, with the given weight
+         * unless {@code weight} is negative.
+         *
+         * @return The weight of the removed edge, or -1 if there is none.
+         */
+        int remove(int u, int v, int weight) {
+            int from = start[u];
+            int end = from + degree[u];
+            for (int i = from; i < end; i++) {
+                if (targets[i] == v && (weight < 0 || weights[i] == weight)) {
+                    int removed = weights[i];
+                    System.arraycopy(targets, i + 1, targets, i, end - i - 1);
+                    System.arraycopy(weights, i + 1, weights, i, end - i - 1);
+                    degree[u]--;
+                    return removed;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Moves the block of {@code u} to the end of the arrays with twice
+         * its capacity, compacting all blocks first if more than half of the
+         * arrays is abandoned space.
+         */
+        private void grow(int u) {
+            if (wasted > size / 2) {
+                compact();
+            }
+            int newCapacity = Math.max(MIN_CAPACITY, capacity[u] << 1);
+            if (size + newCapacity > targets.length) {
+                int length = Math.max(size + newCapacity, targets.length + (targets.length >>> 1));
+                targets = Arrays.copyOf(targets, length);
+                weights = Arrays.copyOf(weights, length);
+            }
+            System.arraycopy(targets, start[u], targets, size, degree[u]);
+            System.arraycopy(weights, start[u], weights, size, degree[u]);
+            wasted += capacity[u];
+            start[u] = size;
+            capacity[u] = newCapacity;
+            size += newCapacity;
+        }
+
+        private void compact() {
+            int[] newTargets = new int[targets.length];
+            int[] newWeights = new int[weights.length];
+            int next = 0;
+            for (int u = 0; u < start.length; u++) {
+                System.arraycopy(targets, start[u], newTargets, next, degree[u]);
+                System.arraycopy(weights, start[u], newWeights, next, degree[u]);
+                start[u] = next;
+                next += capacity[u];
+            }
+            targets = newTargets;
+            weights = newWeights;
+            size = next;
+            wasted = 0;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package utexas.edu.shortestpathalgorithm;
+
+import java.util.Arrays;
+
+/**
+ * Maintains the shortest distances from a fixed source while the edges of a
+ * {@link DynamicGraph} change. Every modification is repaired as it happens,
+ * touching only the vertices whose distances it can affect, in the manner of
+ * Ramalingam and Reps:
+ *
+ * <ul>
+ * <li>An insertion or weight decrease of {@code u -> v} that shortens the
+ * path to {@code v} is propagated by a Dijkstra search seeded with
+ * {@code v} alone, which stops where distances no longer improve.</li>
+ * <li>A deletion or weight increase of {@code u -> v} only matters if it is
+ * the tree edge of {@code v}. The subtree of {@code v} in the shortest path
+ * tree is then invalidated; every vertex in it takes the best distance
+ * offered by an incoming edge from outside the subtree, and a Dijkstra
+ * search restricted to the subtree settles the rest.</li>
+ * </ul>
+ *
+ * Invalidating the whole subtree, rather than only the vertices that lose
+ * every shortest path, keeps the increase step correct with zero-weight
+ * edges.
+ */
+public final class DynamicShortestPaths implements AutoCloseable {
+
+    private static final int HEAP_ARITY = 4;
+
+    private final DynamicGraph graph;
+    private final int source;
+    private final int[] dist;
+    private final int[] predecessors;
+    private final IndexedDaryHeap heap;
+    private final DynamicGraph.EdgeChangeListener listener = this::edgeChanged;
+
+    // Marks the invalidated subtree of the current increase repair
+    private final int[] mark;
+    private int stamp;
+    private final IntList affected = new IntList();
+    private int lastRepairSize;
+
+    /**
+     * Computes the shortest distances from a source and starts following the
+     * modifications of the graph.
+     *
+     * @param graph The graph, which must not be modified concurrently.
+     * @param source The source node.
+     */
+    public DynamicShortestPaths(DynamicGraph graph, int source) {
+        this.graph = graph;
+        this.source = source;
+        Dijkstra dijkstra = new Dijkstra(graph, source);
+        dijkstra.run();
+        // The arrays belong to a workspace no other query uses
+        this.dist = dijkstra.getShortestDistances();
+        this.predecessors = dijkstra.getPredecessors();
+        this.heap = new IndexedDaryHeap(graph.getNumVertices(), HEAP_ARITY);
+        this.mark = new int[graph.getNumVertices()];
+        this.lastRepairSize = graph.getNumVertices();
+        graph.addListener(listener);
+    }
+
+    /**
+     * Stops following the modifications of the graph. The distances keep
+     * the values they had.
+     */
+    @Override
+    public void close() {
+        graph.removeListener(listener);
+    }
+
+    private void edgeChanged(int u, int v, int oldWeight, int newWeight) {
+        lastRepairSize = 0;
+        if (newWeight < oldWeight) {
+            repairDecrease(u, v, newWeight);
+        } else if (newWeight > oldWeight && predecessors[v] == u) {
+            repairIncrease(v);
+        }
+    }
+
+    private void repairDecrease(int u, int v, int weight) {
+        if (dist[u] == Integer.MAX_VALUE || dist[u] + weight >= dist[v]) {
+            return;
+        }
+        dist[v] = dist[u] + weight;
+        predecessors[v] = u;
+        heap.insertOrDecrease(v, dist[v]);
+        propagate();
+    }
+
+    private void repairIncrease(int v) {
+        if (++stamp == Integer.MAX_VALUE) {
+            Arrays.fill(mark, 0);
+            stamp = 1;
+        }
+
+        // Collect the subtree of v by following tree edges downwards
+        affected.clear();
+        affected.add(v);
+        mark[v] = stamp;
+        for (int i = 0; i < affected.size(); i++) {
+            int x = affected.get(i);
+            for (long e = graph.edgeStart(x), end = graph.edgeEnd(x); e < end; e++) {
+                int child = graph.target(e);
+                if (predecessors[child] == x && mark[child] != stamp) {
+                    mark[child] = stamp;
+                    affected.add(child);
+                }
+            }
+        }
+        for (int i = 0; i < affected.size(); i++) {
+            int x = affected.get(i);
+            dist[x] = Integer.MAX_VALUE;
+            predecessors[x] = -1;
+        }
+
+        // Seed each invalidated vertex with its best edge from outside the subtree
+        CsrGraph incoming = graph.reverse();
+        for (int i = 0; i < affected.size(); i++) {
+            int x = affected.get(i);
+            for (long e = incoming.edgeStart(x), end = incoming.edgeEnd(x); e < end; e++) {
+                int y = incoming.target(e);
+                if (mark[y] != stamp && dist[y] != Integer.MAX_VALUE && dist[y] + incoming.weight(e) < dist[x]) {
+                    dist[x] = dist[y] + incoming.weight(e);
+                    predecessors[x] = y;
+                }
+            }
+            if (dist[x] != Integer.MAX_VALUE) {
+                heap.insertOrDecrease(x, dist[x]);
+            }
+        }
+        propagate();
+        // Vertices outside the subtree cannot improve, so it bounds the repair
+        lastRepairSize = affected.size();
+    }
+
+    /**
+     * Runs Dijkstra's algorithm from the vertices already in the heap,
+     * relaxing only edges that improve a distance.
+     */
+    private void propagate() {
+        while (!heap.isEmpty()) {
+            int node = heap.pollMin();
+            lastRepairSize++;
+            int d = dist[node];
+            for (long e = graph.edgeStart(node), end = graph.edgeEnd(node); e < end; e++) {
+                int neighbour = graph.target(e);
+                int candidate = d + graph.weight(e);
+                if (candidate < dist[neighbour]) {
+                    dist[neighbour] = candidate;
+                    predecessors[neighbour] = node;
+                    heap.insertOrDecrease(neighbour, candidate);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the source node.
+     *
+     * @return The source node.
+     */
+    public int getSource() {
+        return source;
+    }
+
+    /**
+     * Gets the current shortest distance to a vertex.
+     *
+     * @param v The vertex.
+     * @return The distance, or {@link Integer#MAX_VALUE} if unreachable.
+     */
+    public int getDistance(int v) {
+        return dist[v];
+    }
+
+    /**
+     * Gets the vertices on a current shortest path from the source to a
+     * target.
+     *
+     * @param target The target vertex.
+     * @return The path, or an empty array if {@code target} is unreachable.
+     */
+    public int[] getPath(int target) {
+        return ShortestPathResult.tracePath(predecessors, source, target, dist[target] != Integer.MAX_VALUE);
+    }
+
+    /**
+     * Gets the number of vertices whose distance the last modification made
+     * the repair recompute, which is the whole graph before the first
+     * modification.
+     *
+     * @return The size of the last repaired region.
+     */
+    public int getLastRepairSize() {
+        return lastRepairSize;
+    }
+
+    /**
+     * Copies the current distances and shortest path tree into a result that
+     * later modifications do not change.
+     *
+     * @return The result.
+     */
+    public ShortestPathResult snapshot() {
+        return new ShortestPathResult("dynamic", source, dist.clone(), predecessors.clone());
+    }
+}
@@ -0,0 +1,287 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package utexas.edu.shortestpathalgorithm;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Relaxes the edges of a frontier for the stepping engines. On a pool the
+ * frontier is not split by vertex count but by edge count: the edge ranges
+ * of the frontier vertices are laid end to end, and fork/join tasks halve
+ * that sequence until each holds about {@value #EDGE_GRAIN} edges. A task
+ * may start or end in the middle of a vertex, so the edges of a vertex with
+ * a huge degree are shared by many tasks instead of holding up the step
+ * in one of them.
+ *
+ * <p>The improved neighbours are reported once each, however many of their
+ * edges were relaxed. A small relaxation collects them in lists, which are
+ * deduplicated with a stamp array afterwards; once a relaxation covers a
+ * sizeable fraction of the graph, as it does on dense graphs, the tasks set
+ * bits in a bitset over the vertices instead, which holds each vertex once
+ * however often it improves and is read back in vertex order.
+ *
+ * <p>A relaxer belongs to a {@link SolverWorkspace} and keeps the per-vertex
+ * edge ranges of the frontier, and the bitset, in arrays it reuses from
+ * query to query.
+ */
+final class FrontierRelaxer {
+
+    /**
+     * Edge sequences at or below this length are relaxed by a single task.
+     */
+    static final int EDGE_GRAIN = 512;
+
+    /**
+     * Relaxations of more than {@code V / DENSE_FRACTION} edges collect the
+     * improved vertices in the bitset. Reading the bitset back costs a pass
+     * over {@code V / 64} words, small next to the relaxations from there.
+     */
+    static final int DENSE_FRACTION = 16;
+
+    private static final VarHandle LONG_ARRAY = MethodHandles.arrayElementVarHandle(long[].class);
+
+    /**
+     * The edges of each frontier vertex to relax.
+     */
+    enum Edges {
+        /**
+         * Every outgoing edge.
+         */
+        ALL,
+        /**
+         * The edges of weight at most delta.
+         */
+        LIGHT,
+        /**
+         * The edges heavier than delta.
+         */
+        HEAVY
+    }
+
+    private final SolverWorkspace workspace;
+    private final long[] state;
+
+    // firstEdge[i] is the first edge of nodes[i] to relax and offsets[i] the
+    // position of that edge in the laid out sequence
+    private long[] firstEdge = new long[0];
+    private long[] offsets = new long[1];
+
+    // One bit per vertex, all clear between calls
+    private long[] bits;
+    private final int[] seen;
+
+    // Set for the duration of one call to relax
+    private CsrGraph graph;
+    private IntList nodes;
+    private SolverMetrics metrics;
+    private boolean dense;
+
+    /**
+     * Initializes a relaxer for a workspace.
+     *
+     * @param workspace The workspace whose state and buffers to use.
+     */
+    FrontierRelaxer(SolverWorkspace workspace) {
+        this.workspace = workspace;
+        this.state = workspace.state;
+        this.seen = workspace.mark(SolverWorkspace.RELAXER_MARK);
+    }
+
+    /**
+     * Returns the number of vertices of average degree that make up one leaf
+     * task on a graph.
+     *
+     * @param graph The graph.
+     * @return The vertices per leaf task.
+     */
+    static int verticesPerLeaf(CsrGraph graph) {
+        return Math.max(1, (int) (EDGE_GRAIN / Math.max(1, graph.getAverageDegree())));
+    }
+
+    /**
+     * Relaxes the selected edges of every node in {@code nodes}, collecting
+     * each neighbour whose distance was lowered into {@code improved}, once.
+     *
+     * @param graph The graph to relax edges of.
+     * @param nodes The frontier.
+     * @param edges The edges of each node to relax.
+     * @param delta The weight separating light from heavy edges.
+     * @param pool The pool to relax on, or {@code null} to relax on the
+     * calling thread.
+     * @param metrics The metrics to record into, or {@code null}.
+     * @param improved The list to fill; cleared first. Holds the improved
+     * vertices in ascending order if the relaxation ran dense.
+     */
+    void relax(CsrGraph graph, IntList nodes, Edges edges, int delta, ForkJoinPool pool, SolverMetrics metrics,
+            IntList improved) {
+        improved.clear();
+        if (nodes.isEmpty()) {
+            return;
+        }
+        this.graph = graph;
+        this.nodes = nodes;
+        this.metrics = metrics;
+        long start = metrics == null ? 0 : System.nanoTime();
+
+        int size = nodes.size();
+        if (firstEdge.length < size) {
+            firstEdge = new long[Math.max(size, firstEdge.length << 1)];
+            offsets = new long[firstEdge.length + 1];
+        }
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            int v = nodes.get(i);
+            long from = edges == Edges.HEAVY ? graph.edgeUpperBound(v, delta) : graph.edgeStart(v);
+            long to = edges == Edges.LIGHT ? graph.edgeUpperBound(v, delta) : graph.edgeEnd(v);
+            firstEdge[i] = from;
+            offsets[i] = total;
+            total += to - from;
+        }
+        offsets[size] = total;
+
+        dense = total > state.length / DENSE_FRACTION;
+        if (dense && bits == null) {
+            bits = new long[(state.length + 63) >>> 6];
+        }
+        if (pool == null || total <= EDGE_GRAIN) {
+            relaxChunk(0, total, improved);
+        } else {
+            // Each leaf task fills its own buffer; merge them once the phase is done
+            workspace.prepareBuffers(SolverWorkspace.maxLeaves(total, EDGE_GRAIN));
+            pool.invoke(new ChunkTask(0, total));
+            workspace.drainBuffers(improved);
+        }
+        if (dense) {
+            drainBits(improved);
+        } else {
+            deduplicate(improved);
+        }
+
+        if (metrics != null) {
+            int threads = pool == null || total <= EDGE_GRAIN ? 1 : pool.getParallelism();
+            metrics.recordFrontier(size, threads, System.nanoTime() - start);
+        }
+        this.graph = null;
+        this.nodes = null;
+        this.metrics = null;
+    }
+
+    /**
+     * Keeps the first occurrence of every vertex in a list.
+     */
+    private void deduplicate(IntList vertices) {
+        int stamp = workspace.nextStamp();
+        int kept = 0;
+        for (int i = 0; i < vertices.size(); i++) {
+            int v = vertices.get(i);
+            if (seen[v] != stamp) {
+                seen[v] = stamp;
+                vertices.set(kept++, v);
+            }
+        }
+        vertices.truncate(kept);
+    }
+
+    /**
+     * Appends the vertices whose bits are set, in ascending order, and
+     * clears the bitset.
+     */
+    private void drainBits(IntList into) {
+        for (int word = 0; word < bits.length; word++) {
+            long set = bits[word];
+            if (set == 0) {
+                continue;
+            }
+            bits[word] = 0;
+            do {
+                into.add((word << 6) + Long.numberOfTrailingZeros(set));
+                set &= set - 1;
+            } while (set != 0);
+        }
+    }
+
+    /**
+     * Records an improved vertex in the bitset. Leaf tasks share words, so
+     * the bit is set atomically unless it already is.
+     */
+    private void setBit(int v) {
+        long bit = 1L << v;
+        if ((bits[v >>> 6] & bit) == 0) {
+            LONG_ARRAY.getAndBitwiseOr(bits, v >>> 6, bit);
+        }
+    }
+
+    /**
+     * Relaxes the edges at positions {@code from} to {@code to} of the laid
+     * out sequence, recording each neighbour whose distance was lowered in
+     * the bitset when the relaxation runs dense and appending it to
+     * {@code out} otherwise.
+     */
+    private void relaxChunk(long from, long to, IntList out) {
+        long start = metrics == null ? 0 : System.nanoTime();
+        int improvedCount = 0;
+
+        // The last node whose edges begin at or before the chunk
+        int i = Arrays.binarySearch(offsets, 0, nodes.size() + 1, from);
+        if (i < 0) {
+            i = -i - 2;
+        } else {
+            while (i < nodes.size() && offsets[i + 1] == from) {
+                i++; // skip nodes without edges to relax
+            }
+        }
+        for (long position = from; position < to; i++) {
+            long end = Math.min(to, offsets[i + 1]);
+            if (end > position) {
+                int node = nodes.get(i);
+                int d = Relaxation.distance(state, node);
+                long shift = firstEdge[i] - offsets[i];
+                for (long e = position + shift, last = end + shift; e < last; e++) {
+                    int neighbour = graph.target(e);
+
+                    if (Relaxation.relaxMin(state, neighbour, d + graph.weight(e), node)) {
+                        improvedCount++;
+                        if (dense) {
+                            setBit(neighbour);
+                        } else {
+                            out.add(neighbour);
+                        }
+                    }
+                }
+                position = end;
+            }
+        }
+
+        if (metrics != null) {
+            metrics.recordLeaf(to - from, improvedCount, System.nanoTime() - start);
+        }
+    }
+
+    private class ChunkTask extends RecursiveAction {
+
+        private final long from;
+        private final long to;
+
+        ChunkTask(long from, long to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= EDGE_GRAIN) {
+                relaxChunk(from, to, dense ? null : workspace.claimBuffer());
+                return;
+            }
+            long mid = (from + to) >>> 1;
+            invokeAll(new ChunkTask(from, mid), new ChunkTask(mid, to));
+        }
+    }
+}
@@ -5,67 +5,238 @@
  */
 package utexas.edu.shortestpathalgorithm;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 /**
- * Represents a directed graph using adjacency lists.
+ * Represents an immutable directed graph in Compressed Sparse Row (CSR) form
+ * on the Java heap. The outgoing edges of vertex {@code u} occupy the index
+ * range {@code [edgeStart(u), edgeEnd(u))} of the parallel {@code targets}
+ * and {@code weights} arrays, ordered by ascending weight.
  */
-public class Graph {
+public class Graph implements CsrGraph {
 
-    private int V;
-    private List<Edge>[] adj;
+    private final int V;
+    private final int[] offsets;
+    private final int[] targets;
+    private final int[] weights;
+    private final int maxWeight;
+    private final long totalWeight;
+
+    // The transposed graph, built on first use
+    private volatile Graph reverse;
+
+    /**
+     * Builds a graph with the given number of vertices from an edge list.
+     *
+     * @param V The number of vertices in the graph.
+     * @param edges The edges as {@code {source, destination, weight}} triples.
+     */
+    public Graph(int V, int[][] edges) {
+        this(V, column(edges, 0), column(edges, 1), column(edges, 2));
+    }
 
     /**
-     * Initializes a graph with the given number of vertices.
+     * Builds a graph with the given number of vertices from parallel edge
+     * arrays. The first pass counts the out-degree of every vertex, the
+     * second pass scatters each edge into its slot. Each adjacency range is
+     * then sorted by weight so that the edges up to any weight bound form a
+     * prefix.
      *
      * @param V The number of vertices in the graph.
+     * @param sources The source vertex of every edge.
+     * @param destinations The destination vertex of every edge.
+     * @param edgeWeights The weight of every edge.
      */
-    public Graph(int V) {
+    public Graph(int V, int[] sources, int[] destinations, int[] edgeWeights) {
         this.V = V;
-        adj = new ArrayList[V];
-        for (int i = 0; i < V; i++) {
-            adj[i] = new ArrayList<>();
+        this.offsets = new int[V + 1];
+        this.targets = new int[sources.length];
+        this.weights = new int[sources.length];
+
+        for (int u : sources) {
+            offsets[u + 1]++;
+        }
+        for (int u = 0; u < V; u++) {
+            offsets[u + 1] += offsets[u];
+        }
+
+        int[] cursor = new int[V];
+        System.arraycopy(offsets, 0, cursor, 0, V);
+        for (int i = 0; i < sources.length; i++) {
+            int slot = cursor[sources[i]]++;
+            targets[slot] = destinations[i];
+            weights[slot] = edgeWeights[i];
+        }
+
+        for (int u = 0; u < V; u++) {
+            sortByWeight(targets, weights, offsets[u], offsets[u + 1]);
+        }
+        int max = 0;
+        long total = 0;
+        for (int w : weights) {
+            max = Math.max(max, w);
+            total += w;
         }
+        this.maxWeight = max;
+        this.totalWeight = total;
     }
 
     /**
-     * Adds a directed edge between two vertices with the given weight.
+     * Wraps arrays that already are in CSR form with each adjacency range
+     * sorted by weight, without copying or re-sorting them.
+     */
+    private Graph(int V, int[] offsets, int[] targets, int[] weights, int maxWeight, long totalWeight) {
+        this.V = V;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.maxWeight = maxWeight;
+        this.totalWeight = totalWeight;
+    }
+
+    /**
+     * Creates a graph directly over CSR arrays, which must have the layout
+     * this class documents: {@code offsets} has {@code V + 1} ascending
+     * entries and each adjacency range is sorted by weight. The arrays are
+     * not copied.
      *
-     * @param u The source vertex.
-     * @param v The destination vertex.
-     * @param weight The weight of the edge.
+     * @param offsets The edge offsets of every vertex.
+     * @param targets The destination vertex of every edge.
+     * @param weights The weight of every edge.
+     * @param maxWeight The largest weight.
+     * @param totalWeight The sum of all weights.
+     * @return The graph.
      */
-    public void addEdge(int u, int v, int weight) {
-        adj[u].add(new Edge(v, weight));
+    static Graph fromCsr(int[] offsets, int[] targets, int[] weights, int maxWeight, long totalWeight) {
+        return new Graph(offsets.length - 1, offsets, targets, weights, maxWeight, totalWeight);
+    }
+
+    private static int[] column(int[][] edges, int index) {
+        int[] values = new int[edges.length];
+        for (int i = 0; i < edges.length; i++) {
+            values[i] = edges[i][index];
+        }
+        return values;
     }
 
     /**
-     * Returns the adjacency list representation of the graph.
+     * Sorts the edges {@code from} to {@code to} of CSR arrays by weight,
+     * breaking ties by target.
+     */
+    static void sortByWeight(int[] targets, int[] weights, int from, int to) {
+        if (to - from < 2) {
+            return;
+        }
+        // Pack weight and target into one key so a primitive sort orders both
+        long[] keys = new long[to - from];
+        for (int e = from; e < to; e++) {
+            keys[e - from] = ((long) weights[e] << 32) | (targets[e] & 0xFFFFFFFFL);
+        }
+        Arrays.sort(keys);
+        for (int e = from; e < to; e++) {
+            weights[e] = (int) (keys[e - from] >>> 32);
+            targets[e] = (int) keys[e - from];
+        }
+    }
+
+    /**
+     * Builds a graph from an edge list, sizing it to the largest vertex id
+     * referenced by any edge.
      *
-     * @return The adjacency list.
+     * @param edges The edges as {@code {source, destination, weight}} triples.
+     * @return The graph.
      */
-    public List<Edge>[] getAdjacencyList() {
-        return adj;
+    public static Graph fromEdges(int[][] edges) {
+        int maxVertex = -1;
+        for (int[] edge : edges) {
+            maxVertex = Math.max(maxVertex, Math.max(edge[0], edge[1]));
+        }
+        return new Graph(maxVertex + 1, edges);
     }
-}
 
-/**
- * Represents a directed edge with a destination vertex and a weight.
- */
-class Edge {
+    @Override
+    public int getNumVertices() {
+        return V;
+    }
+
+    @Override
+    public long getNumEdges() {
+        return targets.length;
+    }
+
+    @Override
+    public long edgeStart(int u) {
+        return offsets[u];
+    }
+
+    @Override
+    public long edgeEnd(int u) {
+        return offsets[u + 1];
+    }
 
-    int dest;
-    int weight;
+    @Override
+    public int degree(int u) {
+        return offsets[u + 1] - offsets[u];
+    }
+
+    @Override
+    public int target(long e) {
+        return targets[(int) e];
+    }
+
+    @Override
+    public int weight(long e) {
+        return weights[(int) e];
+    }
+
+    @Override
+    public int getMaxWeight() {
+        return maxWeight;
+    }
+
+    @Override
+    public long getTotalWeight() {
+        return totalWeight;
+    }
+
+    @Override
+    public long edgeUpperBound(int u, int bound) {
+        int lo = offsets[u];
+        int hi = offsets[u + 1];
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (weights[mid] <= bound) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
 
     /**
-     * Initializes an edge with a destination vertex and a weight.
+     * Returns the transposed graph. It is built on first use and cached; the
+     * reverse of the reverse is this graph.
      *
-     * @param dest The destination vertex.
-     * @param weight The weight of the edge.
+     * @return The reverse graph.
      */
-    public Edge(int dest, int weight) {
-        this.dest = dest;
-        this.weight = weight;
+    @Override
+    public Graph reverse() {
+        Graph result = reverse;
+        if (result == null) {
+            synchronized (this) {
+                result = reverse;
+                if (result == null) {
+                    int[] sources = new int[targets.length];
+                    for (int u = 0; u < V; u++) {
+                        Arrays.fill(sources, offsets[u], offsets[u + 1], u);
+                    }
+                    result = new Graph(V, targets, sources, weights);
+                    result.reverse = this;
+                    reverse = result;
+                }
+            }
+        }
+        return result;
     }
 }
@@ -0,0 +1,305 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package utexas.edu.shortestpathalgorithm;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads and writes graphs in a compact little-endian binary CSR format that
+ * can be memory-mapped instead of parsed:
+ *
+ * <pre>
+ * int  magic        "SPG1"
+ * int  version
+ * int  numVertices
+ * int  maxWeight
+ * long numEdges
+ * long totalWeight
+ * long offsets[numVertices + 1]
+ * int  targets[numEdges]
+ * int  weights[numEdges]
+ * </pre>
+ *
+ * Offsets are stored as longs so the format is not limited to 2^31 edges,
+ * and every adjacency range is sorted by weight, as in {@link Graph}. A file
+ * can either be loaded onto the heap or mapped and searched in place as an
+ * {@link OffHeapGraph}.
+ */
+public final class GraphFile {
+
+    static final int MAGIC = 0x31475053; // "SPG1" in little-endian
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 32;
+
+    private GraphFile() {
+    }
+
+    /**
+     * Converts a DIMACS {@code .gr} file to the binary format from the
+     * command line.
+     *
+     * @param args The input {@code .gr} path and the output path.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: GraphFile <input.gr> <output.bin>");
+            System.exit(1);
+        }
+        long startTime = System.currentTimeMillis();
+        convertDimacs(Path.of(args[0]), Path.of(args[1]));
+        System.out.println("Converted " + args[0] + " in " + (System.currentTimeMillis() - startTime) + " milliseconds");
+    }
+
+    /**
+     * Writes a graph in the binary format.
+     *
+     * @param graph The graph.
+     * @param path The file to create or overwrite.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void write(CsrGraph graph, Path path) throws IOException {
+        int V = graph.getNumVertices();
+        long E = graph.getNumEdges();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Layout layout = new Layout(channel, V, E, FileChannel.MapMode.READ_WRITE);
+            layout.writeHeader(V, graph.getMaxWeight(), E, graph.getTotalWeight());
+            for (int u = 0; u <= V; u++) {
+                layout.offsets.putLong(u, u < V ? graph.edgeStart(u) : E);
+            }
+            for (long e = 0; e < E; e++) {
+                layout.targets.putInt(e, graph.target(e));
+                layout.weights.putInt(e, graph.weight(e));
+            }
+        }
+    }
+
+    /**
+     * Loads a graph from the binary format. The file is memory-mapped and
+     * its arrays are bulk-copied onto the heap; nothing is parsed.
+     *
+     * @param path The file to read.
+     * @return The graph.
+     * @throws IOException If the file cannot be read, is not in the binary
+     * format, or has more edges than an on-heap {@link Graph} can hold; use
+     * {@link #map(Path)} for those.
+     */
+    public static Graph load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            OffHeapRegion header = readHeader(channel);
+            int V = header.getInt(2);
+            int maxWeight = header.getInt(3);
+            long E = header.getLong(2);
+            long totalWeight = header.getLong(3);
+            if (E > Integer.MAX_VALUE) {
+                throw new IOException(path + " has " + E + " edges, too many for an on-heap graph");
+            }
+
+            Layout layout = new Layout(channel, V, E, FileChannel.MapMode.READ_ONLY);
+            int[] offsets = new int[V + 1];
+            for (int u = 0; u <= V; u++) {
+                offsets[u] = (int) layout.offsets.getLong(u);
+            }
+            int[] targets = new int[(int) E];
+            int[] weights = new int[(int) E];
+            layout.targets.getInts(0, targets, 0, targets.length);
+            layout.weights.getInts(0, weights, 0, weights.length);
+            return Graph.fromCsr(offsets, targets, weights, maxWeight, totalWeight);
+        }
+    }
+
+    /**
+     * Maps a graph in the binary format without copying it. Edges are read
+     * from the page cache on demand, so the graph may be larger than the
+     * heap, or than physical memory.
+     *
+     * @param path The file to map.
+     * @return The graph.
+     * @throws IOException If the file cannot be read or is not in the binary
+     * format.
+     */
+    public static OffHeapGraph map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            OffHeapRegion header = readHeader(channel);
+            int V = header.getInt(2);
+            long E = header.getLong(2);
+            Layout layout = new Layout(channel, V, E, FileChannel.MapMode.READ_ONLY);
+            return new OffHeapGraph(V, E, layout.offsets, layout.targets, layout.weights, header.getInt(3), header.getLong(3));
+        }
+    }
+
+    /**
+     * Converts a DIMACS shortest path file ({@code .gr}) to the binary
+     * format without holding the edges in memory. The input is streamed
+     * twice: once to count out-degrees, once to scatter every arc straight
+     * into the memory-mapped output. Heap use is proportional to the number
+     * of vertices and the largest out-degree, not the number of edges.
+     *
+     * @param input The DIMACS file, with 1-based vertex ids.
+     * @param output The binary file to create or overwrite.
+     * @throws IOException If either file cannot be accessed or the input is
+     * malformed.
+     */
+    public static void convertDimacs(Path input, Path output) throws IOException {
+        // Pass 1: problem line and out-degrees
+        int V = -1;
+        long E = 0;
+        long[] offsets = null;
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.US_ASCII)) {
+            long[] fields = new long[3];
+            for (String line; (line = reader.readLine()) != null;) {
+                if (line.startsWith("p")) {
+                    String[] parts = line.trim().split("\\s+");
+                    if (parts.length != 4) {
+                        throw new IOException("Malformed problem line: " + line);
+                    }
+                    V = Integer.parseInt(parts[2]);
+                    offsets = new long[V + 1];
+                } else if (line.startsWith("a")) {
+                    if (offsets == null) {
+                        throw new IOException("Arc before problem line in " + input);
+                    }
+                    parseArc(line, fields, V);
+                    offsets[(int) fields[0] + 1]++;
+                    E++;
+                }
+            }
+        }
+        if (offsets == null) {
+            throw new IOException("No problem line in " + input);
+        }
+        for (int u = 0; u < V; u++) {
+            offsets[u + 1] += offsets[u];
+        }
+
+        try (FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Layout layout = new Layout(channel, V, E, FileChannel.MapMode.READ_WRITE);
+            for (int u = 0; u <= V; u++) {
+                layout.offsets.putLong(u, offsets[u]);
+            }
+
+            // Pass 2: scatter arcs into their slots
+            int[] filled = new int[V];
+            int maxWeight = 0;
+            long totalWeight = 0;
+            try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.US_ASCII)) {
+                long[] fields = new long[3];
+                for (String line; (line = reader.readLine()) != null;) {
+                    if (line.startsWith("a")) {
+                        parseArc(line, fields, V);
+                        int u = (int) fields[0];
+                        int w = (int) fields[2];
+                        long slot = offsets[u] + filled[u]++;
+                        layout.targets.putInt(slot, (int) fields[1]);
+                        layout.weights.putInt(slot, w);
+                        maxWeight = Math.max(maxWeight, w);
+                        totalWeight += w;
+                    }
+                }
+            }
+
+            // Pass 3: sort every adjacency range by weight, in place
+            OffHeapGraph.sortByWeight(V, layout.offsets, layout.targets, layout.weights);
+            layout.writeHeader(V, maxWeight, E, totalWeight);
+        }
+    }
+
+    /**
+     * Parses an {@code a u v w} line into 0-based {@code u, v} and {@code w}
+     * without allocating.
+     */
+    private static void parseArc(String line, long[] fields, int V) throws IOException {
+        int field = 0;
+        int i = 1;
+        int length = line.length();
+        while (field < 3) {
+            while (i < length && (line.charAt(i) == ' ' || line.charAt(i) == '\t')) {
+                i++;
+            }
+            if (i == length) {
+                throw new IOException("Malformed arc line: " + line);
+            }
+            boolean negative = line.charAt(i) == '-';
+            if (negative) {
+                i++;
+            }
+            long value = 0;
+            int start = i;
+            for (char c; i < length && (c = line.charAt(i)) >= '0' && c <= '9'; i++) {
+                value = value * 10 + (c - '0');
+            }
+            if (i == start) {
+                throw new IOException("Malformed arc line: " + line);
+            }
+            fields[field++] = negative ? -value : value;
+        }
+        fields[0]--;
+        fields[1]--;
+        if (fields[0] < 0 || fields[0] >= V || fields[1] < 0 || fields[1] >= V) {
+            throw new IOException("Arc endpoint out of range: " + line);
+        }
+        if (fields[2] < 0 || fields[2] > Integer.MAX_VALUE) {
+            throw new IOException("Arc weight out of range: " + line);
+        }
+    }
+
+    private static OffHeapRegion readHeader(FileChannel channel) throws IOException {
+        if (channel.size() < HEADER_BYTES) {
+            throw new IOException("File too short for a graph header");
+        }
+        OffHeapRegion header = OffHeapRegion.map(channel, 0, HEADER_BYTES, FileChannel.MapMode.READ_ONLY);
+        if (header.getInt(0) != MAGIC) {
+            throw new IOException("Not a binary graph file");
+        }
+        if (header.getInt(1) != VERSION) {
+            throw new IOException("Unsupported graph file version " + header.getInt(1));
+        }
+        return header;
+    }
+
+    /**
+     * The three mapped arrays of a graph file, located from its vertex and
+     * edge counts.
+     */
+    static final class Layout {
+
+        final FileChannel channel;
+        final OffHeapRegion offsets;
+        final OffHeapRegion targets;
+        final OffHeapRegion weights;
+
+        Layout(FileChannel channel, int V, long E, FileChannel.MapMode mode) throws IOException {
+            this.channel = channel;
+            long offsetsStart = HEADER_BYTES;
+            long targetsStart = offsetsStart + 8L * (V + 1);
+            long weightsStart = targetsStart + 4L * E;
+            long end = weightsStart + 4L * E;
+            if (mode == FileChannel.MapMode.READ_ONLY && channel.size() < end) {
+                throw new IOException("Graph file truncated: expected " + end + " bytes");
+            }
+            this.offsets = OffHeapRegion.map(channel, offsetsStart, targetsStart - offsetsStart, mode);
+            this.targets = OffHeapRegion.map(channel, targetsStart, weightsStart - targetsStart, mode);
+            this.weights = OffHeapRegion.map(channel, weightsStart, end - weightsStart, mode);
+        }
+
+        void writeHeader(int V, int maxWeight, long E, long totalWeight) throws IOException {
+            OffHeapRegion header = OffHeapRegion.map(channel, 0, HEADER_BYTES, FileChannel.MapMode.READ_WRITE);
+            header.putInt(0, MAGIC);
+            header.putInt(1, VERSION);
+            header.putInt(2, V);
+            header.putInt(3, maxWeight);
+            header.putLong(2, E);
+            header.putLong(3, totalWeight);
+        }
+    }
+}
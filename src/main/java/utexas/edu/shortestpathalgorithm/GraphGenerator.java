@@ -0,0 +1,314 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package utexas.edu.shortestpathalgorithm;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Generates large sparse synthetic graphs for load tests, in parallel and
+ * straight into CSR arrays. Every vertex draws its edges from a random
+ * stream seeded by the graph seed and the vertex alone, so a first parallel
+ * pass can count the out-degrees, a prefix sum lays out the offsets, and a
+ * second parallel pass replays the same streams to fill in the edges. No
+ * edge list is ever materialized, and the same seed gives the same graph on
+ * any number of cores.
+ *
+ * <p>Edge weights are drawn uniformly from {@code 1} to {@code maxWeight}.
+ */
+public final class GraphGenerator {
+
+    /**
+     * Vertex ranges at or below this size are generated by a single task.
+     */
+    private static final int SEQUENTIAL_THRESHOLD = 4096;
+
+    /**
+     * Poisson means at or above this are sampled from a normal
+     * approximation instead of by multiplying uniforms.
+     */
+    private static final double POISSON_NORMAL_THRESHOLD = 30;
+
+    private GraphGenerator() {
+    }
+
+    /**
+     * Generates a directed Erdős–Rényi graph in which every vertex links to
+     * a Poisson-distributed number of uniformly chosen other vertices.
+     *
+     * @param numVertices The number of vertices.
+     * @param averageDegree The expected out-degree of a vertex.
+     * @param maxWeight The largest edge weight.
+     * @param seed The random seed.
+     * @return The graph.
+     */
+    public static Graph erdosRenyi(int numVertices, double averageDegree, int maxWeight, long seed) {
+        if (numVertices < 2 && averageDegree > 0) {
+            throw new IllegalArgumentException("An edge needs two vertices");
+        }
+        return generate(numVertices, maxWeight, seed, new VertexGenerator() {
+            @Override
+            public int degree(int u, SplitMix random) {
+                return random.nextPoisson(averageDegree);
+            }
+
+            @Override
+            public void fill(int u, int degree, SplitMix random, int[] targets, int[] weights, int at) {
+                for (int i = 0; i < degree; i++) {
+                    int v = random.nextInt(numVertices - 1);
+                    targets[at + i] = v < u ? v : v + 1; // never u itself
+                    weights[at + i] = 1 + random.nextInt(maxWeight);
+                }
+            }
+        });
+    }
+
+    /**
+     * Generates an R-MAT graph with the Graph500 quadrant probabilities
+     * {@code a = 0.57, b = c = 0.19}.
+     *
+     * @param scale The base-2 logarithm of the number of vertices.
+     * @param edgeFactor The expected number of edges per vertex.
+     * @param maxWeight The largest edge weight.
+     * @param seed The random seed.
+     * @return The graph.
+     */
+    public static Graph rmat(int scale, int edgeFactor, int maxWeight, long seed) {
+        return rmat(scale, edgeFactor, 0.57, 0.19, 0.19, maxWeight, seed);
+    }
+
+    /**
+     * Generates an R-MAT (recursive Kronecker) graph. An edge lands in the
+     * top-left, top-right, bottom-left or bottom-right quadrant of the
+     * adjacency matrix with probabilities a, b, c and {@code 1 - a - b - c},
+     * recursively at every bit of the vertex ids, which yields the skewed
+     * degrees and small diameter of social and web graphs.
+     *
+     * <p>Since the bits are chosen independently, a vertex's expected
+     * out-degree is the product of its row probabilities, and given its
+     * row the target bits are independent too. Each vertex therefore draws
+     * a Poisson-distributed degree around that expectation and its targets
+     * bit by bit, which matches edge-by-edge R-MAT sampling up to the
+     * Poisson approximation of the binomial degree.
+     *
+     * @param scale The base-2 logarithm of the number of vertices, at most 30.
+     * @param edgeFactor The expected number of edges per vertex.
+     * @param a The probability of the top-left quadrant.
+     * @param b The probability of the top-right quadrant.
+     * @param c The probability of the bottom-left quadrant.
+     * @param maxWeight The largest edge weight.
+     * @param seed The random seed.
+     * @return The graph.
+     */
+    public static Graph rmat(int scale, int edgeFactor, double a, double b, double c, int maxWeight, long seed) {
+        if (scale < 1 || scale > 30) {
+            throw new IllegalArgumentException("scale must be between 1 and 30: " + scale);
+        }
+        double d = 1 - a - b - c;
+        if (a < 0 || b < 0 || c < 0 || d < 0) {
+            throw new IllegalArgumentException("Quadrant probabilities must be non-negative and sum to 1");
+        }
+        int numVertices = 1 << scale;
+        double numEdges = (double) edgeFactor * numVertices;
+        // Column bit 1 given a row bit of 0 or 1
+        double rightGivenTop = a + b == 0 ? 0 : b / (a + b);
+        double rightGivenBottom = c + d == 0 ? 0 : d / (c + d);
+        return generate(numVertices, maxWeight, seed, new VertexGenerator() {
+            @Override
+            public int degree(int u, SplitMix random) {
+                double probability = 1;
+                for (int bit = 0; bit < scale; bit++) {
+                    probability *= (u >>> bit & 1) == 0 ? a + b : c + d;
+                }
+                return random.nextPoisson(numEdges * probability);
+            }
+
+            @Override
+            public void fill(int u, int degree, SplitMix random, int[] targets, int[] weights, int at) {
+                for (int i = 0; i < degree; i++) {
+                    int v = 0;
+                    for (int bit = 0; bit < scale; bit++) {
+                        double right = (u >>> bit & 1) == 0 ? rightGivenTop : rightGivenBottom;
+                        if (random.nextDouble() < right) {
+                            v |= 1 << bit;
+                        }
+                    }
+                    targets[at + i] = v;
+                    weights[at + i] = 1 + random.nextInt(maxWeight);
+                }
+            }
+        });
+    }
+
+    /**
+     * Generates a two-dimensional grid in which every vertex is linked in
+     * both directions to its neighbours above, below, left and right, like
+     * a road mesh. Both directions of a link carry the same weight. Vertex
+     * {@code r * columns + c} sits in row {@code r} and column {@code c}.
+     *
+     * @param rows The number of rows.
+     * @param columns The number of columns.
+     * @param maxWeight The largest edge weight.
+     * @param seed The random seed.
+     * @return The graph.
+     */
+    public static Graph grid(int rows, int columns, int maxWeight, long seed) {
+        int numVertices = Math.multiplyExact(rows, columns);
+        return generate(numVertices, maxWeight, seed, new VertexGenerator() {
+            @Override
+            public int degree(int u, SplitMix random) {
+                int r = u / columns;
+                int c = u % columns;
+                return (r > 0 ? 1 : 0) + (r < rows - 1 ? 1 : 0) + (c > 0 ? 1 : 0) + (c < columns - 1 ? 1 : 0);
+            }
+
+            @Override
+            public void fill(int u, int degree, SplitMix random, int[] targets, int[] weights, int at) {
+                int r = u / columns;
+                int c = u % columns;
+                if (r > 0) {
+                    at = link(u, u - columns, targets, weights, at);
+                }
+                if (r < rows - 1) {
+                    at = link(u, u + columns, targets, weights, at);
+                }
+                if (c > 0) {
+                    at = link(u, u - 1, targets, weights, at);
+                }
+                if (c < columns - 1) {
+                    link(u, u + 1, targets, weights, at);
+                }
+            }
+
+            private int link(int u, int v, int[] targets, int[] weights, int at) {
+                // Seeded by the unordered pair, so both directions agree
+                long pair = (long) Math.min(u, v) << 32 | Math.max(u, v);
+                targets[at] = v;
+                weights[at] = 1 + new SplitMix(seed, pair).nextInt(maxWeight);
+                return at + 1;
+            }
+        });
+    }
+
+    /**
+     * Counts the degrees, lays out the offsets, fills in and sorts the edges
+     * and wraps the arrays in a graph.
+     */
+    private static Graph generate(int numVertices, int maxWeight, long seed, VertexGenerator generator) {
+        if (numVertices < 0) {
+            throw new IllegalArgumentException("numVertices must not be negative: " + numVertices);
+        }
+        if (maxWeight <= 0) {
+            throw new IllegalArgumentException("maxWeight must be positive: " + maxWeight);
+        }
+        int[] offsets = new int[numVertices + 1];
+        SolverPool.shared().invoke(new RangeTask(0, numVertices, SEQUENTIAL_THRESHOLD, (from, to) -> {
+            for (int u = from; u < to; u++) {
+                offsets[u + 1] = generator.degree(u, new SplitMix(seed, u));
+            }
+        }));
+        long numEdges = 0;
+        for (int u = 0; u < numVertices; u++) {
+            numEdges += offsets[u + 1];
+            if (numEdges > Integer.MAX_VALUE - 8) {
+                throw new IllegalArgumentException("The graph would have more than " + (Integer.MAX_VALUE - 8)
+                        + " edges");
+            }
+            offsets[u + 1] = (int) numEdges;
+        }
+
+        int[] targets = new int[(int) numEdges];
+        int[] weights = new int[(int) numEdges];
+        LongAccumulator max = new LongAccumulator(Math::max, 0);
+        LongAdder total = new LongAdder();
+        SolverPool.shared().invoke(new RangeTask(0, numVertices, SEQUENTIAL_THRESHOLD, (from, to) -> {
+            int rangeMax = 0;
+            long rangeTotal = 0;
+            for (int u = from; u < to; u++) {
+                SplitMix random = new SplitMix(seed, u);
+                int degree = generator.degree(u, random); // replays the first pass
+                generator.fill(u, degree, random, targets, weights, offsets[u]);
+                Graph.sortByWeight(targets, weights, offsets[u], offsets[u + 1]);
+                for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                    rangeMax = Math.max(rangeMax, weights[e]);
+                    rangeTotal += weights[e];
+                }
+            }
+            max.accumulate(rangeMax);
+            total.add(rangeTotal);
+        }));
+        return Graph.fromCsr(offsets, targets, weights, (int) max.get(), total.sum());
+    }
+
+    /**
+     * Draws the edges of single vertices. Both methods get a stream seeded
+     * for the vertex alone; {@link #fill} is handed the stream right after
+     * {@link #degree} has drawn from it.
+     */
+    private interface VertexGenerator {
+
+        int degree(int u, SplitMix random);
+
+        void fill(int u, int degree, SplitMix random, int[] targets, int[] weights, int at);
+    }
+
+    /**
+     * A SplitMix64 stream. It is cheap to seed, so every vertex can start
+     * its own, and its output depends only on the seed.
+     */
+    private static final class SplitMix {
+
+        private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+        private long state;
+
+        SplitMix(long seed, long stream) {
+            this.state = mix(seed ^ mix(stream * GOLDEN_GAMMA));
+        }
+
+        private static long mix(long z) {
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            return z ^ (z >>> 31);
+        }
+
+        long nextLong() {
+            return mix(state += GOLDEN_GAMMA);
+        }
+
+        double nextDouble() {
+            return (nextLong() >>> 11) * 0x1.0p-53;
+        }
+
+        int nextInt(int bound) {
+            // Multiply-shift maps 32 random bits onto [0, bound)
+            return (int) (((nextLong() >>> 32) * bound) >>> 32);
+        }
+
+        double nextGaussian() {
+            // Box-Muller; the second value is discarded to keep the stream simple
+            double u1 = 1 - nextDouble();
+            double u2 = nextDouble();
+            return Math.sqrt(-2 * Math.log(u1)) * Math.cos(2 * Math.PI * u2);
+        }
+
+        int nextPoisson(double mean) {
+            if (mean <= 0) {
+                return 0;
+            }
+            if (mean >= POISSON_NORMAL_THRESHOLD) {
+                long sample = Math.round(mean + Math.sqrt(mean) * nextGaussian());
+                return (int) Math.max(0, Math.min(Integer.MAX_VALUE - 8, sample));
+            }
+            double limit = Math.exp(-mean);
+            int count = 0;
+            for (double product = nextDouble(); product > limit; product *= nextDouble()) {
+                count++;
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package utexas.edu.shortestpathalgorithm;
+
+import java.util.Arrays;
+
+/**
+ * Assigns every vertex of a graph to one of k partitions. Vertices are laid
+ * out in breadth-first order, restarting from the lowest unvisited vertex
+ * whenever a search runs dry, and the order is cut into k consecutive runs
+ * of roughly equal work, counting a vertex as one plus its out-degree.
+ * Breadth-first runs keep most neighbours in the same partition, so few
+ * relaxations have to cross partitions.
+ *
+ * <p>Each vertex also gets a local index, its position within its
+ * partition, so that partitions can keep their per-vertex data in dense
+ * arrays of their own.
+ */
+public final class GraphPartition {
+
+    private final int[] owner;
+    private final int[] localIndex;
+    private final int[][] vertices;
+    private final long cutEdges;
+
+    private GraphPartition(int[] owner, int[] localIndex, int[][] vertices, long cutEdges) {
+        this.owner = owner;
+        this.localIndex = localIndex;
+        this.vertices = vertices;
+        this.cutEdges = cutEdges;
+    }
+
+    /**
+     * Partitions a graph along a breadth-first order.
+     *
+     * @param graph The graph.
+     * @param numPartitions The number of partitions.
+     * @return The partition.
+     */
+    public static GraphPartition breadthFirst(CsrGraph graph, int numPartitions) {
+        if (numPartitions <= 0) {
+            throw new IllegalArgumentException("numPartitions must be positive: " + numPartitions);
+        }
+        int V = graph.getNumVertices();
+        int[] order = new int[V];
+        boolean[] visited = new boolean[V];
+        int tail = 0;
+        for (int seed = 0; seed < V; seed++) {
+            if (visited[seed]) {
+                continue;
+            }
+            visited[seed] = true;
+            order[tail++] = seed;
+            for (int head = tail - 1; head < tail; head++) {
+                int u = order[head];
+                for (long e = graph.edgeStart(u), end = graph.edgeEnd(u); e < end; e++) {
+                    int v = graph.target(e);
+                    if (!visited[v]) {
+                        visited[v] = true;
+                        order[tail++] = v;
+                    }
+                }
+            }
+        }
+
+        // Cut the order where the running work passes each multiple of total / k
+        double total = V + (double) graph.getNumEdges();
+        int[] owner = new int[V];
+        int[] localIndex = new int[V];
+        int[] sizes = new int[numPartitions];
+        double work = 0;
+        for (int u : order) {
+            int p = Math.min(numPartitions - 1, (int) (work * numPartitions / total));
+            owner[u] = p;
+            localIndex[u] = sizes[p]++;
+            work += 1 + graph.degree(u);
+        }
+        int[][] vertices = new int[numPartitions][];
+        for (int p = 0; p < numPartitions; p++) {
+            vertices[p] = new int[sizes[p]];
+        }
+        for (int u = 0; u < V; u++) {
+            vertices[owner[u]][localIndex[u]] = u;
+        }
+
+        long cutEdges = 0;
+        for (int u = 0; u < V; u++) {
+            for (long e = graph.edgeStart(u), end = graph.edgeEnd(u); e < end; e++) {
+                if (owner[graph.target(e)] != owner[u]) {
+                    cutEdges++;
+                }
+            }
+        }
+        return new GraphPartition(owner, localIndex, vertices, cutEdges);
+    }
+
+    /**
+     * Gets the number of partitions.
+     *
+     * @return The number of partitions.
+     */
+    public int getNumPartitions() {
+        return vertices.length;
+    }
+
+    /**
+     * Gets the partition a vertex belongs to.
+     *
+     * @param v The vertex.
+     * @return The partition index.
+     */
+    public int getPartition(int v) {
+        return owner[v];
+    }
+
+    /**
+     * Gets the position of a vertex within its partition.
+     *
+     * @param v The vertex.
+     * @return The local index.
+     */
+    public int getLocalIndex(int v) {
+        return localIndex[v];
+    }
+
+    /**
+     * Gets the vertices of a partition, ordered by local index.
+     *
+     * @param partition The partition index.
+     * @return The vertices.
+     */
+    public int[] getVertices(int partition) {
+        return vertices[partition].clone();
+    }
+
+    /**
+     * Gets the vertices of a partition without copying them.
+     */
+    int[] vertices(int partition) {
+        return vertices[partition];
+    }
+
+    /**
+     * Gets the number of edges whose endpoints lie in different partitions.
+     *
+     * @return The cut size.
+     */
+    public long getCutEdges() {
+        return cutEdges;
+    }
+
+    @Override
+    public String toString() {
+        int[] sizes = new int[vertices.length];
+        for (int p = 0; p < sizes.length; p++) {
+            sizes[p] = vertices[p].length;
+        }
+        return "GraphPartition" + Arrays.toString(sizes) + " cut=" + cutEdges;
+    }
+}
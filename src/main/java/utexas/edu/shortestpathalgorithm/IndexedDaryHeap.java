@@ -0,0 +1,159 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package utexas.edu.shortestpathalgorithm;
+
+import java.util.Arrays;
+
+/**
+ * An indexed d-ary min-heap of vertices keyed by {@code int} priorities.
+ * Every vertex knows its slot in the heap, so its key can be decreased in
+ * place. All storage is allocated up front; inserting, decreasing and
+ * polling never allocate.
+ */
+final class IndexedDaryHeap {
+
+    private final int arity;
+    private final int[] vertices;
+    private final int[] keys;
+    private final int[] position;
+    private int size;
+
+    /**
+     * Initializes an empty heap able to hold the vertices {@code [0, capacity)}.
+     *
+     * @param capacity The number of vertices.
+     * @param arity The number of children per heap node, at least 2.
+     */
+    IndexedDaryHeap(int capacity, int arity) {
+        if (arity < 2) {
+            throw new IllegalArgumentException("arity must be at least 2: " + arity);
+        }
+        this.arity = arity;
+        this.vertices = new int[capacity];
+        this.keys = new int[capacity];
+        this.position = new int[capacity];
+        Arrays.fill(position, -1);
+    }
+
+    /**
+     * Returns the number of children per heap node.
+     *
+     * @return The arity.
+     */
+    int getArity() {
+        return arity;
+    }
+
+    /**
+     * Returns whether the heap holds no vertices.
+     *
+     * @return {@code true} if the heap is empty.
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns whether a vertex is currently in the heap.
+     *
+     * @param v The vertex.
+     * @return {@code true} if {@code v} is queued.
+     */
+    boolean contains(int v) {
+        return position[v] >= 0;
+    }
+
+    /**
+     * Inserts a vertex, or lowers its key if it is already queued with a
+     * larger one.
+     *
+     * @param v The vertex.
+     * @param key The priority of {@code v}.
+     */
+    void insertOrDecrease(int v, int key) {
+        int i = position[v];
+        if (i < 0) {
+            i = size++;
+        } else if (key >= keys[i]) {
+            return;
+        }
+        siftUp(i, v, key);
+    }
+
+    /**
+     * Returns the key of the vertex at the top of the heap.
+     *
+     * @return The smallest key.
+     */
+    int minKey() {
+        return keys[0];
+    }
+
+    /**
+     * Removes and returns the vertex with the smallest key.
+     *
+     * @return The vertex.
+     */
+    int pollMin() {
+        int top = vertices[0];
+        position[top] = -1;
+        int last = --size;
+        if (last > 0) {
+            siftDown(0, vertices[last], keys[last]);
+        }
+        return top;
+    }
+
+    /**
+     * Removes every vertex, touching only the slots that are in use.
+     */
+    void clear() {
+        for (int i = 0; i < size; i++) {
+            position[vertices[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private void siftUp(int i, int v, int key) {
+        while (i > 0) {
+            int parent = (i - 1) / arity;
+            if (keys[parent] <= key) {
+                break;
+            }
+            place(i, vertices[parent], keys[parent]);
+            i = parent;
+        }
+        place(i, v, key);
+    }
+
+    private void siftDown(int i, int v, int key) {
+        while (true) {
+            int first = i * arity + 1;
+            if (first >= size) {
+                break;
+            }
+            int last = Math.min(first + arity, size);
+            int best = first;
+            for (int c = first + 1; c < last; c++) {
+                if (keys[c] < keys[best]) {
+                    best = c;
+                }
+            }
+            if (keys[best] >= key) {
+                break;
+            }
+            place(i, vertices[best], keys[best]);
+            i = best;
+        }
+        place(i, v, key);
+    }
+
+    private void place(int i, int v, int key) {
+        vertices[i] = v;
+        keys[i] = key;
+        position[v] = i;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package utexas.edu.shortestpathalgorithm;
+
+import java.util.Arrays;
+
+/**
+ * Compresses int arrays whose entries are close to a predictable baseline.
+ * Each entry is stored as the zigzag-encoded difference from its baseline in
+ * a variable number of bytes, seven bits per byte. Differences are taken
+ * with wrapping arithmetic, so any array round-trips exactly.
+ */
+final class IntArrayCodec {
+
+    private IntArrayCodec() {
+    }
+
+    /**
+     * Compresses an array.
+     *
+     * @param values The array.
+     * @param fromIndex Whether the baseline of each entry is its own index,
+     * which suits predecessor arrays, rather than the previous entry, which
+     * suits distance arrays.
+     * @return The compressed bytes.
+     */
+    static byte[] encode(int[] values, boolean fromIndex) {
+        byte[] out = new byte[values.length + 16];
+        int length = 0;
+        int previous = 0;
+        for (int i = 0; i < values.length; i++) {
+            int difference = values[i] - (fromIndex ? i : previous);
+            previous = values[i];
+            int zigzag = (difference << 1) ^ (difference >> 31);
+            if (length + 5 > out.length) {
+                out = Arrays.copyOf(out, out.length + (out.length >>> 1) + 5);
+            }
+            while ((zigzag & ~0x7F) != 0) {
+                out[length++] = (byte) ((zigzag & 0x7F) | 0x80);
+                zigzag >>>= 7;
+            }
+            out[length++] = (byte) zigzag;
+        }
+        return Arrays.copyOf(out, length);
+    }
+
+    /**
+     * Restores an array compressed by {@link #encode(int[], boolean)}.
+     *
+     * @param bytes The compressed bytes.
+     * @param length The number of entries.
+     * @param fromIndex The baseline the array was compressed with.
+     * @return The array.
+     */
+    static int[] decode(byte[] bytes, int length, boolean fromIndex) {
+        int[] values = new int[length];
+        int position = 0;
+        int previous = 0;
+        for (int i = 0; i < length; i++) {
+            int zigzag = 0;
+            for (int shift = 0;; shift += 7) {
+                byte b = bytes[position++];
+                zigzag |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    break;
+                }
+            }
+            int difference = (zigzag >>> 1) ^ -(zigzag & 1);
+            values[i] = difference + (fromIndex ? i : previous);
+            previous = values[i];
+        }
+        return values;
+    }
+}
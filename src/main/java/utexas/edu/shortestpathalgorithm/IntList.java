@@ -0,0 +1,123 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package utexas.edu.shortestpathalgorithm;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of primitive ints, used for frontiers and other vertex
+ * buffers so that no {@code Integer} boxing happens on the hot paths.
+ */
+final class IntList {
+
+    private int[] data;
+    private int size;
+
+    /**
+     * Initializes an empty list with a small default capacity.
+     */
+    IntList() {
+        this(16);
+    }
+
+    /**
+     * Initializes an empty list with the given capacity.
+     *
+     * @param capacity The initial capacity.
+     */
+    IntList(int capacity) {
+        this.data = new int[Math.max(capacity, 1)];
+    }
+
+    /**
+     * Appends a value to the end of the list.
+     *
+     * @param value The value to append.
+     */
+    void add(int value) {
+        if (size == data.length) {
+            data = Arrays.copyOf(data, size << 1);
+        }
+        data[size++] = value;
+    }
+
+    /**
+     * Appends every value of another list to the end of this list.
+     *
+     * @param other The list to append.
+     */
+    void addAll(IntList other) {
+        int required = size + other.size;
+        if (required > data.length) {
+            data = Arrays.copyOf(data, Math.max(required, data.length << 1));
+        }
+        System.arraycopy(other.data, 0, data, size, other.size);
+        size = required;
+    }
+
+    /**
+     * Returns the value at the given position.
+     *
+     * @param index The position.
+     * @return The value.
+     */
+    int get(int index) {
+        return data[index];
+    }
+
+    /**
+     * Replaces the value at the given position.
+     *
+     * @param index The position.
+     * @param value The new value.
+     */
+    void set(int index, int value) {
+        data[index] = value;
+    }
+
+    /**
+     * Returns the number of values in the list.
+     *
+     * @return The size of the list.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns whether the list holds no values.
+     *
+     * @return {@code true} if the list is empty.
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all values while keeping the allocated capacity.
+     */
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * Drops every value at or after the given position.
+     *
+     * @param newSize The number of values to keep.
+     */
+    void truncate(int newSize) {
+        size = newSize;
+    }
+
+    /**
+     * Copies the values into a new array of exactly {@link #size()} elements.
+     *
+     * @return The values.
+     */
+    int[] toArray() {
+        return Arrays.copyOf(data, size);
+    }
+}
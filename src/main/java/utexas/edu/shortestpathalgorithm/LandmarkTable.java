@@ -0,0 +1,478 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package utexas.edu.shortestpathalgorithm;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Holds the distances between a few landmark vertices and every vertex of a
+ * graph, from which lower bounds on the distance between any two vertices
+ * follow by the triangle inequality: for a landmark {@code L},
+ * {@code d(v, t) >= d(L, t) - d(L, v)} and
+ * {@code d(v, t) >= d(v, L) - d(t, L)}. {@link AltSolver} uses these bounds
+ * to steer point-to-point searches towards the target.
+ *
+ * <p>The distances of a landmark are computed with one single-source query
+ * on the graph and one on its reverse, by default with the parallel Delta
+ * Stepping engine. Both are stored vertex-major, so the bounds of a vertex
+ * against all landmarks share a cache line or two.
+ *
+ * <p>A table can be written next to its graph and loaded again, so the
+ * preprocessing is paid once per graph:
+ *
+ * <pre>
+ * int  magic        "SPL1"
+ * int  version
+ * int  numVertices
+ * int  numLandmarks
+ * long numEdges
+ * long totalWeight
+ * int  landmarks[numLandmarks]
+ * int  fromLandmark[numVertices * numLandmarks]
+ * int  toLandmark[numVertices * numLandmarks]
+ * </pre>
+ */
+public final class LandmarkTable {
+
+    /**
+     * How landmarks are chosen.
+     */
+    public enum Selection {
+        /**
+         * Each landmark is the vertex farthest, in round-trip distance, from
+         * the landmarks chosen before it. Cheap, and spreads landmarks to
+         * the edges of the graph.
+         */
+        FARTHEST,
+        /**
+         * Each landmark is the leaf of the subtree of a shortest path tree,
+         * from a random root, whose distances the landmarks chosen so far
+         * bound worst. Costs one more query per landmark but gives tighter
+         * bounds on most graphs.
+         */
+        AVOID
+    }
+
+    static final int MAGIC = 0x314C5053; // "SPL1" in little-endian
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 32;
+
+    private static final long ROOT_SEED = 0x5EED_1A4DL;
+
+    private final int numVertices;
+    private final long numEdges;
+    private final long totalWeight;
+    private final int[] landmarks;
+    private final int[] fromLandmark;
+    private final int[] toLandmark;
+
+    private LandmarkTable(int numVertices, long numEdges, long totalWeight, int[] landmarks, int[] fromLandmark,
+            int[] toLandmark) {
+        this.numVertices = numVertices;
+        this.numEdges = numEdges;
+        this.totalWeight = totalWeight;
+        this.landmarks = landmarks;
+        this.fromLandmark = fromLandmark;
+        this.toLandmark = toLandmark;
+    }
+
+    /**
+     * Selects landmarks by {@link Selection#AVOID} and computes their
+     * distances with the parallel Delta Stepping engine.
+     *
+     * @param graph The graph.
+     * @param numLandmarks The number of landmarks.
+     * @return The table.
+     */
+    public static LandmarkTable compute(CsrGraph graph, int numLandmarks) {
+        return compute(graph, numLandmarks, Selection.AVOID, new DeltaSteppingSolver(), SolverOptions.defaults());
+    }
+
+    /**
+     * Selects landmarks and computes their distances.
+     *
+     * @param graph The graph.
+     * @param numLandmarks The number of landmarks; at most the number of
+     * vertices are chosen.
+     * @param selection How to choose the landmarks.
+     * @param solver The solver to compute the distances with.
+     * @param options The options of the preprocessing queries.
+     * @return The table.
+     */
+    public static LandmarkTable compute(CsrGraph graph, int numLandmarks, Selection selection,
+            ShortestPathSolver solver, SolverOptions options) {
+        if (numLandmarks <= 0) {
+            throw new IllegalArgumentException("numLandmarks must be positive: " + numLandmarks);
+        }
+        int V = graph.getNumVertices();
+        int k = Math.min(numLandmarks, V);
+        int[] fromLandmark = new int[Math.multiplyExact(V, k)];
+        int[] toLandmark = new int[fromLandmark.length];
+        LandmarkTable table = new LandmarkTable(V, graph.getNumEdges(), graph.getTotalWeight(), new int[k],
+                fromLandmark, toLandmark);
+        CsrGraph reverse = graph.reverse();
+        SplittableRandom random = new SplittableRandom(ROOT_SEED);
+
+        // Round-trip distance to the nearest landmark, for FARTHEST
+        long[] nearest = new long[V];
+        Arrays.fill(nearest, Long.MAX_VALUE);
+        int landmark = V == 0 ? -1 : farthest(graph, solver.solve(graph, 0, options).getDistances(), nearest, table, 0);
+        for (int i = 0; i < k && landmark >= 0; i++) {
+            table.landmarks[i] = landmark;
+            int[] from = solver.solve(graph, landmark, options).getDistances();
+            int[] to = solver.solve(reverse, landmark, options).getDistances();
+            for (int v = 0; v < V; v++) {
+                fromLandmark[v * k + i] = from[v];
+                toLandmark[v * k + i] = to[v];
+                long roundTrip = from[v] == Integer.MAX_VALUE || to[v] == Integer.MAX_VALUE
+                        ? Long.MAX_VALUE : (long) from[v] + to[v];
+                nearest[v] = Math.min(nearest[v], roundTrip);
+            }
+            if (i + 1 < k) {
+                landmark = -1;
+                if (selection == Selection.AVOID) {
+                    ShortestPathResult tree = solver.solve(graph, random.nextInt(V), options);
+                    landmark = avoid(tree, table, i + 1);
+                }
+                if (landmark < 0) {
+                    landmark = farthest(graph, null, nearest, table, i + 1);
+                }
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Picks the vertex with the largest distance, or round-trip distance to
+     * the nearest landmark when {@code distances} is null, that is not
+     * already a landmark. Unreachable vertices count as farthest of all, so
+     * landmarks also cover parts of the graph the others cannot reach,
+     * unless they have no out-edges: a sink bounds nothing but itself.
+     */
+    private static int farthest(CsrGraph graph, int[] distances, long[] nearest, LandmarkTable table, int chosen) {
+        int best = -1;
+        long bestDistance = -1;
+        for (int v = 0; v < nearest.length; v++) {
+            long distance = distances == null ? nearest[v]
+                    : distances[v] == Integer.MAX_VALUE ? Long.MAX_VALUE : distances[v];
+            if (distance == Long.MAX_VALUE && graph.degree(v) == 0) {
+                distance = 0;
+            }
+            if (distance > bestDistance && !table.isLandmark(v, chosen)) {
+                best = v;
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Implements the avoid heuristic on a shortest path tree: every vertex
+     * weighs the gap between its tree distance and the lower bound the
+     * chosen landmarks give for it, subtrees that hold a landmark weigh
+     * nothing, and the new landmark is the leaf reached by descending from
+     * the heaviest subtree into the heaviest child each time.
+     *
+     * @return The new landmark, or -1 if every subtree holds a landmark.
+     */
+    private static int avoid(ShortestPathResult tree, LandmarkTable table, int chosen) {
+        int root = tree.getSource();
+        int[] dist = tree.getDistances();
+        int[] parent = tree.getPredecessors();
+        int V = dist.length;
+
+        // Index the children of every vertex, then list the tree top-down
+        int[] childStart = new int[V + 1];
+        for (int v = 0; v < V; v++) {
+            if (parent[v] >= 0) {
+                childStart[parent[v] + 1]++;
+            }
+        }
+        for (int v = 0; v < V; v++) {
+            childStart[v + 1] += childStart[v];
+        }
+        int[] children = new int[childStart[V]];
+        int[] cursor = Arrays.copyOf(childStart, V);
+        for (int v = 0; v < V; v++) {
+            if (parent[v] >= 0) {
+                children[cursor[parent[v]]++] = v;
+            }
+        }
+        int[] order = new int[V];
+        int reached = 0;
+        order[reached++] = root;
+        for (int head = 0; head < reached; head++) {
+            int u = order[head];
+            for (int c = childStart[u]; c < childStart[u + 1]; c++) {
+                order[reached++] = children[c];
+            }
+        }
+
+        // Sum the subtree weights bottom-up
+        long[] size = new long[V];
+        boolean[] holdsLandmark = new boolean[V];
+        for (int i = 0; i < chosen; i++) {
+            holdsLandmark[table.landmarks[i]] = true;
+        }
+        for (int i = reached - 1; i >= 0; i--) {
+            int v = order[i];
+            if (holdsLandmark[v]) {
+                size[v] = 0;
+            } else {
+                int bound = table.bestLowerBound(root, v, chosen);
+                size[v] += dist[v] - Math.min(bound, dist[v]);
+            }
+            int p = parent[v];
+            if (p >= 0) {
+                if (holdsLandmark[v]) {
+                    holdsLandmark[p] = true;
+                } else {
+                    size[p] += size[v];
+                }
+            }
+        }
+
+        int heaviest = -1;
+        for (int i = 0; i < reached; i++) {
+            int v = order[i];
+            if (!holdsLandmark[v] && size[v] > 0 && (heaviest < 0 || size[v] > size[heaviest])) {
+                heaviest = v;
+            }
+        }
+        if (heaviest < 0) {
+            return -1;
+        }
+        for (int v = heaviest;;) {
+            int next = -1;
+            for (int c = childStart[v]; c < childStart[v + 1]; c++) {
+                int child = children[c];
+                if (!holdsLandmark[child] && (next < 0 || size[child] > size[next])) {
+                    next = child;
+                }
+            }
+            if (next < 0) {
+                return v;
+            }
+            v = next;
+        }
+    }
+
+    private boolean isLandmark(int v, int chosen) {
+        for (int i = 0; i < chosen; i++) {
+            if (landmarks[i] == v) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the best lower bound the first {@code count} landmarks give on
+     * the distance from {@code v} to {@code t}.
+     */
+    private int bestLowerBound(int v, int t, int count) {
+        int best = 0;
+        for (int i = 0; i < count; i++) {
+            best = Math.max(best, lowerBound(v, t, i));
+            if (best == Integer.MAX_VALUE) {
+                break;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Gets the lower bound one landmark gives on the distance from {@code v}
+     * to {@code t}. Where the landmark's distances prove that {@code t}
+     * cannot be reached from {@code v}, the bound is
+     * {@link Integer#MAX_VALUE}.
+     *
+     * @param v The vertex.
+     * @param t The target.
+     * @param landmark The landmark index.
+     * @return The bound.
+     */
+    int lowerBound(int v, int t, int landmark) {
+        int k = landmarks.length;
+        int best = 0;
+        int fromV = fromLandmark[v * k + landmark];
+        int fromT = fromLandmark[t * k + landmark];
+        if (fromT != Integer.MAX_VALUE) {
+            if (fromV != Integer.MAX_VALUE) {
+                best = fromT - fromV;
+            }
+        } else if (fromV != Integer.MAX_VALUE) {
+            // The landmark reaches v but not t, so v cannot reach t
+            return Integer.MAX_VALUE;
+        }
+        int toV = toLandmark[v * k + landmark];
+        int toT = toLandmark[t * k + landmark];
+        if (toV != Integer.MAX_VALUE) {
+            if (toT != Integer.MAX_VALUE) {
+                best = Math.max(best, toV - toT);
+            }
+        } else if (toT != Integer.MAX_VALUE) {
+            // t reaches the landmark but v does not, so v cannot reach t
+            return Integer.MAX_VALUE;
+        }
+        return best;
+    }
+
+    /**
+     * Picks the landmarks that give the best bounds for a query, scored by
+     * their bound on the distance from source to target.
+     *
+     * @param source The source node.
+     * @param target The target node.
+     * @param count The number of landmarks to pick.
+     * @return The landmark indices, best first.
+     */
+    int[] selectActive(int source, int target, int count) {
+        int k = landmarks.length;
+        long[] scored = new long[k];
+        for (int i = 0; i < k; i++) {
+            // Negate the bound so an ascending sort puts the best first
+            scored[i] = ((long) -lowerBound(source, target, i) << 32) | i;
+        }
+        Arrays.sort(scored);
+        int[] active = new int[Math.min(count, k)];
+        for (int i = 0; i < active.length; i++) {
+            active[i] = (int) scored[i];
+        }
+        return active;
+    }
+
+    /**
+     * Checks that the table was computed for a graph of this shape.
+     *
+     * @param graph The graph.
+     * @return {@code true} if the vertex count, edge count and total weight
+     * match.
+     */
+    public boolean matches(CsrGraph graph) {
+        return graph.getNumVertices() == numVertices && graph.getNumEdges() == numEdges
+                && graph.getTotalWeight() == totalWeight;
+    }
+
+    /**
+     * Gets the number of landmarks.
+     *
+     * @return The number of landmarks.
+     */
+    public int getNumLandmarks() {
+        return landmarks.length;
+    }
+
+    /**
+     * Gets the landmark vertices.
+     *
+     * @return The landmarks, in the order they were chosen.
+     */
+    public int[] getLandmarks() {
+        return landmarks.clone();
+    }
+
+    /**
+     * Gets the distance from a landmark to a vertex.
+     *
+     * @param landmark The landmark index.
+     * @param v The vertex.
+     * @return The distance, or {@link Integer#MAX_VALUE} if unreachable.
+     */
+    public int getDistanceFrom(int landmark, int v) {
+        return fromLandmark[v * landmarks.length + landmark];
+    }
+
+    /**
+     * Gets the distance from a vertex to a landmark.
+     *
+     * @param landmark The landmark index.
+     * @param v The vertex.
+     * @return The distance, or {@link Integer#MAX_VALUE} if unreachable.
+     */
+    public int getDistanceTo(int landmark, int v) {
+        return toLandmark[v * landmarks.length + landmark];
+    }
+
+    /**
+     * Writes the table in the binary format.
+     *
+     * @param path The file to create or overwrite.
+     * @throws IOException If the file cannot be written.
+     */
+    public void write(Path path) throws IOException {
+        int k = landmarks.length;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            OffHeapRegion header = OffHeapRegion.map(channel, 0, HEADER_BYTES, FileChannel.MapMode.READ_WRITE);
+            header.putInt(0, MAGIC);
+            header.putInt(1, VERSION);
+            header.putInt(2, numVertices);
+            header.putInt(3, k);
+            header.putLong(2, numEdges);
+            header.putLong(3, totalWeight);
+            OffHeapRegion body = OffHeapRegion.map(channel, HEADER_BYTES, bodyBytes(numVertices, k),
+                    FileChannel.MapMode.READ_WRITE);
+            body.putInts(0, landmarks, 0, k);
+            body.putInts(k, fromLandmark, 0, fromLandmark.length);
+            body.putInts(k + (long) fromLandmark.length, toLandmark, 0, toLandmark.length);
+        }
+    }
+
+    /**
+     * Loads a table written by {@link #write(Path)} for a graph.
+     *
+     * @param path The file to read.
+     * @param graph The graph the table is for.
+     * @return The table.
+     * @throws IOException If the file cannot be read, is not a landmark
+     * table, or was computed for a graph of a different shape.
+     */
+    public static LandmarkTable load(Path path, CsrGraph graph) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException("File too short for a landmark table header");
+            }
+            OffHeapRegion header = OffHeapRegion.map(channel, 0, HEADER_BYTES, FileChannel.MapMode.READ_ONLY);
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException("Not a landmark table file");
+            }
+            if (header.getInt(1) != VERSION) {
+                throw new IOException("Unsupported landmark table version " + header.getInt(1));
+            }
+            int V = header.getInt(2);
+            int k = header.getInt(3);
+            long bodyBytes = bodyBytes(V, k);
+            if (channel.size() < HEADER_BYTES + bodyBytes) {
+                throw new IOException("Landmark table truncated: expected " + (HEADER_BYTES + bodyBytes) + " bytes");
+            }
+            LandmarkTable table = new LandmarkTable(V, header.getLong(2), header.getLong(3), new int[k],
+                    new int[V * k], new int[V * k]);
+            if (!table.matches(graph)) {
+                throw new IOException(path + " was computed for a different graph");
+            }
+            OffHeapRegion body = OffHeapRegion.map(channel, HEADER_BYTES, bodyBytes, FileChannel.MapMode.READ_ONLY);
+            body.getInts(0, table.landmarks, 0, k);
+            body.getInts(k, table.fromLandmark, 0, table.fromLandmark.length);
+            body.getInts(k + (long) table.fromLandmark.length, table.toLandmark, 0, table.toLandmark.length);
+            return table;
+        }
+    }
+
+    private static long bodyBytes(int V, int k) {
+        return 4L * k + 8L * Math.multiplyExact(V, k);
+    }
+
+    @Override
+    public String toString() {
+        return "LandmarkTable" + Arrays.toString(landmarks);
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package utexas.edu.shortestpathalgorithm;
+
+import java.util.Arrays;
+
+/**
+ * Represents an immutable directed graph in CSR form stored outside the Java
+ * heap, either in direct memory or in a memory-mapped {@link GraphFile}.
+ * Offsets are {@code long}, so the number of edges is not limited to 2^31,
+ * and the edges add nothing to garbage collection work however many there
+ * are.
+ */
+public final class OffHeapGraph implements CsrGraph {
+
+    private final int V;
+    private final long E;
+    private final OffHeapRegion offsets;
+    private final OffHeapRegion targets;
+    private final OffHeapRegion weights;
+    private final int maxWeight;
+    private final long totalWeight;
+
+    // The transposed graph, built on first use
+    private volatile OffHeapGraph reverse;
+
+    /**
+     * Wraps off-heap arrays that already are in CSR form with each adjacency
+     * range sorted by weight.
+     */
+    OffHeapGraph(int V, long E, OffHeapRegion offsets, OffHeapRegion targets, OffHeapRegion weights,
+            int maxWeight, long totalWeight) {
+        this.V = V;
+        this.E = E;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.maxWeight = maxWeight;
+        this.totalWeight = totalWeight;
+    }
+
+    /**
+     * Copies a graph into direct memory.
+     *
+     * @param graph The graph to copy.
+     * @return The off-heap copy.
+     */
+    public static OffHeapGraph copyOf(CsrGraph graph) {
+        int V = graph.getNumVertices();
+        long E = graph.getNumEdges();
+        OffHeapRegion offsets = OffHeapRegion.allocate(8L * (V + 1));
+        OffHeapRegion targets = OffHeapRegion.allocate(4L * E);
+        OffHeapRegion weights = OffHeapRegion.allocate(4L * E);
+        for (int u = 0; u < V; u++) {
+            offsets.putLong(u, graph.edgeStart(u));
+        }
+        offsets.putLong(V, E);
+        for (long e = 0; e < E; e++) {
+            targets.putInt(e, graph.target(e));
+            weights.putInt(e, graph.weight(e));
+        }
+        return new OffHeapGraph(V, E, offsets, targets, weights, graph.getMaxWeight(), graph.getTotalWeight());
+    }
+
+    /**
+     * Sorts every adjacency range of off-heap CSR arrays by weight, in place.
+     * Weight and target are packed into one key so a primitive sort orders
+     * both; the only heap buffer is one key per edge of the largest range.
+     *
+     * @param V The number of vertices.
+     * @param offsets The {@code V + 1} edge offsets.
+     * @param targets The destination vertex of every edge.
+     * @param weights The weight of every edge.
+     */
+    static void sortByWeight(int V, OffHeapRegion offsets, OffHeapRegion targets, OffHeapRegion weights) {
+        int maxDegree = 0;
+        for (int u = 0; u < V; u++) {
+            maxDegree = (int) Math.max(maxDegree, offsets.getLong(u + 1) - offsets.getLong(u));
+        }
+        long[] keys = new long[maxDegree];
+        for (int u = 0; u < V; u++) {
+            long start = offsets.getLong(u);
+            int degree = (int) (offsets.getLong(u + 1) - start);
+            if (degree < 2) {
+                continue;
+            }
+            for (int i = 0; i < degree; i++) {
+                keys[i] = ((long) weights.getInt(start + i) << 32) | (targets.getInt(start + i) & 0xFFFFFFFFL);
+            }
+            Arrays.sort(keys, 0, degree);
+            for (int i = 0; i < degree; i++) {
+                weights.putInt(start + i, (int) (keys[i] >>> 32));
+                targets.putInt(start + i, (int) keys[i]);
+            }
+        }
+    }
+
+    @Override
+    public int getNumVertices() {
+        return V;
+    }
+
+    @Override
+    public long getNumEdges() {
+        return E;
+    }
+
+    @Override
+    public long edgeStart(int u) {
+        return offsets.getLong(u);
+    }
+
+    @Override
+    public long edgeEnd(int u) {
+        return offsets.getLong(u + 1);
+    }
+
+    @Override
+    public int target(long e) {
+        return targets.getInt(e);
+    }
+
+    @Override
+    public int weight(long e) {
+        return weights.getInt(e);
+    }
+
+    @Override
+    public int getMaxWeight() {
+        return maxWeight;
+    }
+
+    @Override
+    public long getTotalWeight() {
+        return totalWeight;
+    }
+
+    /**
+     * Returns the transposed graph, also stored in direct memory. It is built
+     * on first use and cached; the reverse of the reverse is this graph.
+     *
+     * @return The reverse graph.
+     */
+    @Override
+    public OffHeapGraph reverse() {
+        OffHeapGraph result = reverse;
+        if (result == null) {
+            synchronized (this) {
+                result = reverse;
+                if (result == null) {
+                    result = transpose();
+                    result.reverse = this;
+                    reverse = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private OffHeapGraph transpose() {
+        // Count in-degrees, then scatter every edge into its slot
+        long[] cursor = new long[V + 1];
+        for (long e = 0; e < E; e++) {
+            cursor[targets.getInt(e) + 1]++;
+        }
+        OffHeapRegion reverseOffsets = OffHeapRegion.allocate(8L * (V + 1));
+        for (int v = 0; v < V; v++) {
+            cursor[v + 1] += cursor[v];
+            reverseOffsets.putLong(v, cursor[v]);
+        }
+        reverseOffsets.putLong(V, E);
+
+        OffHeapRegion reverseTargets = OffHeapRegion.allocate(4L * E);
+        OffHeapRegion reverseWeights = OffHeapRegion.allocate(4L * E);
+        for (int u = 0; u < V; u++) {
+            for (long e = offsets.getLong(u), end = offsets.getLong(u + 1); e < end; e++) {
+                long slot = cursor[targets.getInt(e)]++;
+                reverseTargets.putInt(slot, u);
+                reverseWeights.putInt(slot, weights.getInt(e));
+            }
+        }
+        sortByWeight(V, reverseOffsets, reverseTargets, reverseWeights);
+        return new OffHeapGraph(V, E, reverseOffsets, reverseTargets, reverseWeights, maxWeight, totalWeight);
+    }
+}
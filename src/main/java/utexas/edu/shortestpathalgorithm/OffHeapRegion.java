@@ -0,0 +1,178 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package utexas.edu.shortestpathalgorithm;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A region of memory outside the Java heap addressed with {@code long}
+ * indices, either mapped from a file or allocated directly. A single
+ * {@link ByteBuffer} cannot exceed 2 GB, so the region is held as a series
+ * of fixed-size little-endian chunks; ints and longs never straddle two
+ * chunks because the chunk size is a multiple of 8 and values are aligned to
+ * their own size.
+ */
+final class OffHeapRegion {
+
+    private static final int CHUNK_SHIFT = 30;
+    private static final long CHUNK_BYTES = 1L << CHUNK_SHIFT;
+    private static final long CHUNK_MASK = CHUNK_BYTES - 1;
+
+    private final ByteBuffer[] chunks;
+    private final long size;
+
+    private OffHeapRegion(ByteBuffer[] chunks, long size) {
+        this.chunks = chunks;
+        this.size = size;
+    }
+
+    /**
+     * Maps {@code size} bytes of a file starting at {@code position}. The
+     * mapping stays valid after the channel is closed.
+     *
+     * @param channel The file to map.
+     * @param position The file offset of the region.
+     * @param size The length of the region in bytes.
+     * @param mode Whether the region is mapped read-only or read-write.
+     * @return The region.
+     * @throws IOException If the file cannot be mapped.
+     */
+    static OffHeapRegion map(FileChannel channel, long position, long size, FileChannel.MapMode mode) throws IOException {
+        ByteBuffer[] chunks = new ByteBuffer[numChunks(size)];
+        for (int i = 0; i < chunks.length; i++) {
+            long start = (long) i << CHUNK_SHIFT;
+            long length = Math.min(CHUNK_BYTES, size - start);
+            chunks[i] = channel.map(mode, position + start, length).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return new OffHeapRegion(chunks, size);
+    }
+
+    /**
+     * Allocates {@code size} zeroed bytes of direct memory. The memory is
+     * released when the region becomes unreachable.
+     *
+     * @param size The length of the region in bytes.
+     * @return The region.
+     */
+    static OffHeapRegion allocate(long size) {
+        ByteBuffer[] chunks = new ByteBuffer[numChunks(size)];
+        for (int i = 0; i < chunks.length; i++) {
+            long start = (long) i << CHUNK_SHIFT;
+            int length = (int) Math.min(CHUNK_BYTES, size - start);
+            chunks[i] = ByteBuffer.allocateDirect(length).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return new OffHeapRegion(chunks, size);
+    }
+
+    private static int numChunks(long size) {
+        return (int) ((size + CHUNK_BYTES - 1) >>> CHUNK_SHIFT);
+    }
+
+    /**
+     * Gets the length of the region in bytes.
+     *
+     * @return The region size.
+     */
+    long size() {
+        return size;
+    }
+
+    /**
+     * Reads the {@code index}-th int of the region.
+     *
+     * @param index The int index.
+     * @return The value.
+     */
+    int getInt(long index) {
+        long offset = index << 2;
+        return chunks[(int) (offset >>> CHUNK_SHIFT)].getInt((int) (offset & CHUNK_MASK));
+    }
+
+    /**
+     * Writes the {@code index}-th int of the region.
+     *
+     * @param index The int index.
+     * @param value The value.
+     */
+    void putInt(long index, int value) {
+        long offset = index << 2;
+        chunks[(int) (offset >>> CHUNK_SHIFT)].putInt((int) (offset & CHUNK_MASK), value);
+    }
+
+    /**
+     * Reads the {@code index}-th long of the region.
+     *
+     * @param index The long index.
+     * @return The value.
+     */
+    long getLong(long index) {
+        long offset = index << 3;
+        return chunks[(int) (offset >>> CHUNK_SHIFT)].getLong((int) (offset & CHUNK_MASK));
+    }
+
+    /**
+     * Writes the {@code index}-th long of the region.
+     *
+     * @param index The long index.
+     * @param value The value.
+     */
+    void putLong(long index, long value) {
+        long offset = index << 3;
+        chunks[(int) (offset >>> CHUNK_SHIFT)].putLong((int) (offset & CHUNK_MASK), value);
+    }
+
+    /**
+     * Bulk-copies {@code length} ints starting at int index {@code from}
+     * into an array.
+     *
+     * @param from The first int index.
+     * @param into The destination array.
+     * @param at The destination offset.
+     * @param length The number of ints.
+     */
+    void getInts(long from, int[] into, int at, int length) {
+        while (length > 0) {
+            long offset = from << 2;
+            ByteBuffer chunk = chunks[(int) (offset >>> CHUNK_SHIFT)];
+            int inChunk = (int) (offset & CHUNK_MASK);
+            int count = Math.min(length, (chunk.capacity() - inChunk) >>> 2);
+            IntBuffer ints = chunk.duplicate().position(inChunk).slice()
+                    .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            ints.get(into, at, count);
+            from += count;
+            at += count;
+            length -= count;
+        }
+    }
+
+    /**
+     * Bulk-copies ints from an array into the region starting at int index
+     * {@code from}.
+     *
+     * @param from The first int index.
+     * @param values The source array.
+     * @param at The source offset.
+     * @param length The number of ints.
+     */
+    void putInts(long from, int[] values, int at, int length) {
+        while (length > 0) {
+            long offset = from << 2;
+            ByteBuffer chunk = chunks[(int) (offset >>> CHUNK_SHIFT)];
+            int inChunk = (int) (offset & CHUNK_MASK);
+            int count = Math.min(length, (chunk.capacity() - inChunk) >>> 2);
+            IntBuffer ints = chunk.duplicate().position(inChunk).slice()
+                    .order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+            ints.put(values, at, count);
+            from += count;
+            at += count;
+            length -= count;
+        }
+    }
+}
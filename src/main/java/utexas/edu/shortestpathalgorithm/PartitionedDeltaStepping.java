@@ -0,0 +1,573 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package utexas.edu.shortestpathalgorithm;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs Delta Stepping on a graph split into partitions, each of which
+ * behaves like a separate node: it owns the adjacency, distances and
+ * buckets of its own vertices and nothing else. A partition relaxes edges
+ * between its own vertices directly, with plain writes since no other
+ * partition touches its arrays, and sends every relaxation that crosses to
+ * another partition as a message.
+ *
+ * <p>The partitions advance in supersteps over the same bucket:
+ *
+ * <ol>
+ * <li>Every partition empties its copy of the current bucket, relaxing
+ * light edges until no local vertex falls back into it, and appends the
+ * requests for other partitions to one outgoing buffer per destination.</li>
+ * <li>Every partition applies the requests addressed to it. If any of them
+ * refilled a current bucket, the light step repeats.</li>
+ * <li>The heavy edges of the vertices settled in the bucket are relaxed and
+ * exchanged the same way, and all partitions move to the lowest bucket that
+ * is non-empty in any of them.</li>
+ * </ol>
+ *
+ * Partitions run as tasks on a fork/join pool, or one after another on the
+ * calling thread, and a superstep ends when all of them have finished it.
+ */
+class PartitionedDeltaStepping {
+
+    private final Shard[] shards;
+    private final Worker[] workers;
+    private final int numVertices;
+    private final int maxWeight;
+
+    private int delta;
+    private int numBuckets;
+    private int current;
+
+    private long supersteps;
+    private long messages;
+
+    /**
+     * Initializes an engine for a partitioned graph.
+     *
+     * @param shards The adjacency of each partition, from
+     * {@link #shards(CsrGraph, GraphPartition)}.
+     * @param numVertices The number of vertices of the whole graph.
+     * @param maxWeight The largest edge weight of the whole graph.
+     */
+    PartitionedDeltaStepping(Shard[] shards, int numVertices, int maxWeight) {
+        this.shards = shards;
+        this.numVertices = numVertices;
+        this.maxWeight = maxWeight;
+        this.workers = new Worker[shards.length];
+        for (int p = 0; p < shards.length; p++) {
+            workers[p] = new Worker(p);
+        }
+    }
+
+    /**
+     * Copies the adjacency of every partition into arrays of its own, with
+     * every edge target translated to its partition and local index.
+     *
+     * @param graph The graph.
+     * @param partition The partition of the graph.
+     * @return One shard per partition.
+     */
+    static Shard[] shards(CsrGraph graph, GraphPartition partition) {
+        Shard[] shards = new Shard[partition.getNumPartitions()];
+        for (int p = 0; p < shards.length; p++) {
+            int[] vertices = partition.vertices(p);
+            int[] offsets = new int[vertices.length + 1];
+            for (int i = 0; i < vertices.length; i++) {
+                offsets[i + 1] = Math.addExact(offsets[i], graph.degree(vertices[i]));
+            }
+            int[] targetPartition = new int[offsets[vertices.length]];
+            int[] targetIndex = new int[offsets[vertices.length]];
+            int[] weights = new int[offsets[vertices.length]];
+            for (int i = 0; i < vertices.length; i++) {
+                // Copied in order, so each vertex's edges stay sorted by weight
+                int k = offsets[i];
+                for (long e = graph.edgeStart(vertices[i]), end = graph.edgeEnd(vertices[i]); e < end; e++, k++) {
+                    int v = graph.target(e);
+                    targetPartition[k] = partition.getPartition(v);
+                    targetIndex[k] = partition.getLocalIndex(v);
+                    weights[k] = graph.weight(e);
+                }
+            }
+            shards[p] = new Shard(vertices, offsets, targetPartition, targetIndex, weights);
+        }
+        return shards;
+    }
+
+    /**
+     * Runs Delta Stepping from a source.
+     *
+     * @param sourcePartition The partition of the source.
+     * @param sourceIndex The local index of the source.
+     * @param delta The bucket width.
+     * @param pool The pool to run the partitions on, or {@code null} to run
+     * them on the calling thread.
+     */
+    void run(int sourcePartition, int sourceIndex, int delta, ForkJoinPool pool) {
+        if (delta <= 0) {
+            throw new IllegalArgumentException("delta must be positive: " + delta);
+        }
+        this.delta = delta;
+        this.numBuckets = maxWeight / delta + 2;
+        this.current = 0;
+        supersteps = 0;
+        messages = 0;
+        superstep(Step.RESET, pool);
+        workers[sourcePartition].start(sourceIndex);
+
+        while (true) {
+            do {
+                superstep(Step.LIGHT, pool);
+                superstep(Step.DELIVER, pool);
+            } while (anyCurrent());
+            superstep(Step.HEAVY, pool);
+            superstep(Step.DELIVER, pool);
+
+            int next = Integer.MAX_VALUE;
+            for (Worker worker : workers) {
+                next = Math.min(next, worker.nextBucket());
+            }
+            if (next == Integer.MAX_VALUE) {
+                break;
+            }
+            current = next;
+        }
+    }
+
+    private boolean anyCurrent() {
+        for (Worker worker : workers) {
+            if (!worker.buckets[current % numBuckets].isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void superstep(Step step, ForkJoinPool pool) {
+        supersteps++;
+        if (pool == null) {
+            for (Worker worker : workers) {
+                worker.run(step);
+            }
+        } else {
+            pool.invoke(new StepTask(step, 0, workers.length));
+        }
+        if (step != Step.DELIVER && step != Step.RESET) {
+            for (Worker worker : workers) {
+                for (IntList outbox : worker.outboxes) {
+                    messages += outbox.size() / 3;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the distances of the last run, indexed by global vertex.
+     *
+     * @return The shortest distances.
+     */
+    int[] getShortestDistances() {
+        int[] dist = new int[numVertices];
+        for (int p = 0; p < shards.length; p++) {
+            int[] vertices = shards[p].vertices;
+            for (int i = 0; i < vertices.length; i++) {
+                dist[vertices[i]] = workers[p].dist[i];
+            }
+        }
+        return dist;
+    }
+
+    /**
+     * Gets the predecessors of the last run, indexed by global vertex.
+     *
+     * @return The predecessors, or -1 for the source and unreached vertices.
+     */
+    int[] getPredecessors() {
+        int[] predecessors = new int[numVertices];
+        for (int p = 0; p < shards.length; p++) {
+            int[] vertices = shards[p].vertices;
+            for (int i = 0; i < vertices.length; i++) {
+                predecessors[vertices[i]] = workers[p].predecessors[i];
+            }
+        }
+        return predecessors;
+    }
+
+    /**
+     * Gets the number of supersteps the last run needed.
+     *
+     * @return The superstep count.
+     */
+    long getSupersteps() {
+        return supersteps;
+    }
+
+    /**
+     * Gets the number of relaxations the last run sent across partitions.
+     *
+     * @return The message count.
+     */
+    long getMessages() {
+        return messages;
+    }
+
+    private enum Step {
+        RESET, LIGHT, HEAVY, DELIVER
+    }
+
+    /**
+     * The adjacency of one partition. Vertex {@code i} is the global vertex
+     * {@code vertices[i]}, and its edges occupy {@code offsets[i]} to
+     * {@code offsets[i + 1]}, sorted by weight.
+     */
+    static final class Shard {
+
+        final int[] vertices;
+        final int[] offsets;
+        final int[] targetPartition;
+        final int[] targetIndex;
+        final int[] weights;
+
+        Shard(int[] vertices, int[] offsets, int[] targetPartition, int[] targetIndex, int[] weights) {
+            this.vertices = vertices;
+            this.offsets = offsets;
+            this.targetPartition = targetPartition;
+            this.targetIndex = targetIndex;
+            this.weights = weights;
+        }
+
+        /**
+         * Returns the end of the edges of local vertex {@code i} whose weight
+         * is at most {@code bound}.
+         */
+        int lightEnd(int i, int bound) {
+            int lo = offsets[i];
+            int hi = offsets[i + 1];
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (weights[mid] <= bound) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+
+    /**
+     * The state of one partition during a run. Only the worker itself writes
+     * its arrays; other workers only read its outgoing buffers, and only in
+     * the delivery step after the one that filled them.
+     */
+    private class Worker {
+
+        private final int index;
+        private final Shard shard;
+        private final int[] dist;
+        private final int[] predecessors;
+        private final IntList[] outboxes;
+        private IntList[] buckets = new IntList[0];
+        private final IntList frontier = new IntList();
+        private final IntList settled = new IntList();
+
+        // Stamps that deduplicate a vertex within one pass and one bucket
+        private final int[] phaseMark;
+        private final int[] settledMark;
+        private int phaseStamp;
+        private int settledStamp;
+        private int settledBucket = -1;
+        private int pending;
+
+        Worker(int index) {
+            this.index = index;
+            this.shard = shards[index];
+            int size = shard.vertices.length;
+            this.dist = new int[size];
+            this.predecessors = new int[size];
+            this.phaseMark = new int[size];
+            this.settledMark = new int[size];
+            this.outboxes = new IntList[shards.length];
+            for (int p = 0; p < outboxes.length; p++) {
+                outboxes[p] = new IntList();
+            }
+        }
+
+        void run(Step step) {
+            switch (step) {
+                case RESET:
+                    reset();
+                    break;
+                case LIGHT:
+                    relaxLight();
+                    break;
+                case HEAVY:
+                    relaxHeavy();
+                    break;
+                default:
+                    deliver();
+                    break;
+            }
+        }
+
+        private void reset() {
+            Arrays.fill(dist, Integer.MAX_VALUE);
+            Arrays.fill(predecessors, -1);
+            if (buckets.length < numBuckets) {
+                IntList[] grown = Arrays.copyOf(buckets, numBuckets);
+                for (int i = buckets.length; i < numBuckets; i++) {
+                    grown[i] = new IntList();
+                }
+                buckets = grown;
+            }
+            for (IntList bucket : buckets) {
+                bucket.clear();
+            }
+            for (IntList outbox : outboxes) {
+                outbox.clear();
+            }
+            settled.clear();
+            settledBucket = -1;
+            pending = 0;
+        }
+
+        void start(int sourceIndex) {
+            dist[sourceIndex] = 0;
+            insert(sourceIndex);
+        }
+
+        private void relaxLight() {
+            if (settledBucket != current) {
+                // First light step of this bucket
+                settledBucket = current;
+                settled.clear();
+                settledStamp = nextStamp(settledMark, settledStamp);
+            }
+            IntList bucket = buckets[current % numBuckets];
+            while (!bucket.isEmpty()) {
+                frontier.clear();
+                phaseStamp = nextStamp(phaseMark, phaseStamp);
+                for (int i = 0; i < bucket.size(); i++) {
+                    int v = bucket.get(i);
+                    // Drop entries that moved to an earlier bucket or were queued twice
+                    if (dist[v] / delta == current && phaseMark[v] != phaseStamp) {
+                        phaseMark[v] = phaseStamp;
+                        frontier.add(v);
+                        if (settledMark[v] != settledStamp) {
+                            settledMark[v] = settledStamp;
+                            settled.add(v);
+                        }
+                    }
+                }
+                pending -= bucket.size();
+                bucket.clear();
+                for (int i = 0; i < frontier.size(); i++) {
+                    int v = frontier.get(i);
+                    relaxEdges(v, shard.offsets[v], shard.lightEnd(v, delta));
+                }
+            }
+        }
+
+        private int nextStamp(int[] marks, int stamp) {
+            if (++stamp == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                stamp = 1;
+            }
+            return stamp;
+        }
+
+        private void relaxHeavy() {
+            if (settledBucket != current) {
+                return;
+            }
+            for (int i = 0; i < settled.size(); i++) {
+                int v = settled.get(i);
+                relaxEdges(v, shard.lightEnd(v, delta), shard.offsets[v + 1]);
+            }
+        }
+
+        private void relaxEdges(int v, int from, int to) {
+            int d = dist[v];
+            int global = shard.vertices[v];
+            for (int k = from; k < to; k++) {
+                int candidate = d + shard.weights[k];
+                int t = shard.targetIndex[k];
+                int p = shard.targetPartition[k];
+                if (p == index) {
+                    offer(t, candidate, global);
+                } else {
+                    IntList outbox = outboxes[p];
+                    outbox.add(t);
+                    outbox.add(candidate);
+                    outbox.add(global);
+                }
+            }
+        }
+
+        /**
+         * Applies the requests every partition addressed to this one in the
+         * previous step, and empties those buffers for the next.
+         */
+        private void deliver() {
+            for (Worker sender : workers) {
+                IntList inbox = sender.outboxes[index];
+                for (int i = 0; i < inbox.size(); i += 3) {
+                    offer(inbox.get(i), inbox.get(i + 1), inbox.get(i + 2));
+                }
+                inbox.clear();
+            }
+        }
+
+        private void offer(int v, int candidate, int predecessor) {
+            if (candidate < dist[v]) {
+                dist[v] = candidate;
+                predecessors[v] = predecessor;
+                insert(v);
+            }
+        }
+
+        private void insert(int v) {
+            buckets[(dist[v] / delta) % numBuckets].add(v);
+            pending++;
+        }
+
+        /**
+         * Returns the lowest bucket after the current one that holds an
+         * entry, or {@code Integer.MAX_VALUE} if every bucket is empty.
+         */
+        int nextBucket() {
+            if (pending == 0) {
+                return Integer.MAX_VALUE;
+            }
+            for (int i = 1; i < numBuckets; i++) {
+                if (!buckets[(current + i) % numBuckets].isEmpty()) {
+                    return current + i;
+                }
+            }
+            return Integer.MAX_VALUE;
+        }
+    }
+
+    private class StepTask extends RecursiveAction {
+
+        private final Step step;
+        private final int from;
+        private final int to;
+
+        StepTask(Step step, int from, int to) {
+            this.step = step;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                workers[from].run(step);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new StepTask(step, from, mid), new StepTask(step, mid, to));
+        }
+    }
+}
+
+/**
+ * Exposes {@link PartitionedDeltaStepping} as a {@link ShortestPathSolver}.
+ * Each graph is partitioned on its first query, and engines are kept for
+ * reuse by later queries on the same graph.
+ */
+class PartitionedDeltaSteppingSolver implements ShortestPathSolver {
+
+    static final String NAME = "partitioned";
+
+    private final int numPartitions;
+    private final Map<CsrGraph, Prepared> prepared = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * Initializes a solver with one partition per core.
+     */
+    PartitionedDeltaSteppingSolver() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Initializes a solver with the given number of partitions.
+     *
+     * @param numPartitions The number of partitions.
+     */
+    PartitionedDeltaSteppingSolver(int numPartitions) {
+        if (numPartitions <= 0) {
+            throw new IllegalArgumentException("numPartitions must be positive: " + numPartitions);
+        }
+        this.numPartitions = numPartitions;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public ShortestPathResult solve(CsrGraph graph, int source, SolverOptions options) {
+        Prepared entry = prepare(graph);
+        PartitionedDeltaStepping engine = entry.idle.poll();
+        if (engine == null) {
+            engine = new PartitionedDeltaStepping(entry.shards, graph.getNumVertices(), graph.getMaxWeight());
+        }
+        try {
+            // The partitions run in lock step, so the bucket width is not adapted
+            int delta = options.getDelta() == SolverOptions.AUTO ? StepTuner.initialDelta(graph) : options.getDelta();
+            engine.run(entry.partition.getPartition(source), entry.partition.getLocalIndex(source), delta,
+                    options.isRunInParallel() ? SolverPool.shared() : null);
+            return ShortestPathResult.copyOf(NAME, source, engine.getShortestDistances(), engine.getPredecessors(),
+                    options.isOffHeapDistances());
+        } finally {
+            entry.idle.offer(engine);
+        }
+    }
+
+    /**
+     * Gets the partition of a graph, partitioning it if needed.
+     *
+     * @param graph The graph.
+     * @return The partition the solver runs on.
+     */
+    GraphPartition partitionOf(CsrGraph graph) {
+        return prepare(graph).partition;
+    }
+
+    private Prepared prepare(CsrGraph graph) {
+        Prepared entry = prepared.get(graph);
+        if (entry == null || entry.version != graph.getVersion()) {
+            long version = graph.getVersion();
+            GraphPartition partition = GraphPartition.breadthFirst(graph, numPartitions);
+            entry = new Prepared(version, partition, PartitionedDeltaStepping.shards(graph, partition));
+            prepared.put(graph, entry);
+        }
+        return entry;
+    }
+
+    private static class Prepared {
+
+        final long version;
+        final GraphPartition partition;
+        final PartitionedDeltaStepping.Shard[] shards;
+        final ConcurrentLinkedQueue<PartitionedDeltaStepping> idle = new ConcurrentLinkedQueue<>();
+
+        Prepared(long version, GraphPartition partition, PartitionedDeltaStepping.Shard[] shards) {
+            this.version = version;
+            this.partition = partition;
+            this.shards = shards;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package utexas.edu.shortestpathalgorithm;
+
+/**
+ * The outcome of a point-to-point shortest path query.
+ */
+public class PointToPointResult {
+
+    private final String solverName;
+    private final int source;
+    private final int target;
+    private final int distance;
+    private final int[] path;
+    private final int settledVertices;
+
+    /**
+     * Initializes a result.
+     *
+     * @param solverName The name of the solver that produced it.
+     * @param source The source node.
+     * @param target The target node.
+     * @param distance The shortest distance, or {@link Integer#MAX_VALUE}
+     * if the target is unreachable.
+     * @param path The vertices of a shortest path from source to target, or
+     * an empty array if the target is unreachable.
+     * @param settledVertices The number of vertices the search settled.
+     */
+    public PointToPointResult(String solverName, int source, int target, int distance, int[] path, int settledVertices) {
+        this.solverName = solverName;
+        this.source = source;
+        this.target = target;
+        this.distance = distance;
+        this.path = path;
+        this.settledVertices = settledVertices;
+    }
+
+    /**
+     * Gets the name of the solver that produced this result.
+     *
+     * @return The solver name.
+     */
+    public String getSolverName() {
+        return solverName;
+    }
+
+    /**
+     * Gets the source node of the query.
+     *
+     * @return The source node.
+     */
+    public int getSource() {
+        return source;
+    }
+
+    /**
+     * Gets the target node of the query.
+     *
+     * @return The target node.
+     */
+    public int getTarget() {
+        return target;
+    }
+
+    /**
+     * Gets the shortest distance from source to target.
+     *
+     * @return The distance, or {@link Integer#MAX_VALUE} if unreachable.
+     */
+    public int getDistance() {
+        return distance;
+    }
+
+    /**
+     * Gets the vertices on a shortest path from source to target.
+     *
+     * @return The path, or an empty array if the target is unreachable.
+     */
+    public int[] getPath() {
+        return path;
+    }
+
+    /**
+     * Gets the number of vertices the search settled before it could stop,
+     * a measure of how much of the graph it explored.
+     *
+     * @return The number of settled vertices.
+     */
+    public int getSettledVertices() {
+        return settledVertices;
+    }
+}
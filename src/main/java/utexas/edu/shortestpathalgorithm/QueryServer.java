@@ -0,0 +1,232 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package utexas.edu.shortestpathalgorithm;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Serves concurrent shortest path queries against one immutable graph from
+ * inside the process. Callers submit queries from any number of threads and
+ * get a future back; the queries run on a fixed number of solver slots, one
+ * thread each, since a query keeps a core busy from start to finish.
+ *
+ * <p>Admission is bounded: at most {@code maxQueued} accepted queries wait
+ * for a free slot, and a query submitted beyond that fails at once with a
+ * {@link RejectedExecutionException} instead of growing an unbounded queue.
+ * Callers that see rejections should back off, which keeps the waiting time
+ * of accepted queries, and so their tail latency, bounded by roughly
+ * {@code maxQueued / slots} service times.
+ *
+ * <p>The latency of every completed query, from submission to completion,
+ * is recorded so percentiles can be read while the server runs.
+ */
+public final class QueryServer implements AutoCloseable {
+
+    private final CsrGraph graph;
+    private final ShortestPathSolver solver;
+    private final SolverOptions options;
+    private final ThreadPoolExecutor slots;
+
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Initializes a server with one slot per core and room for four waiting
+     * queries per slot.
+     *
+     * @param graph The graph to answer queries on, which must not change
+     * while the server runs.
+     * @param solver The solver to answer queries with.
+     * @param options The options of every query; queries run on their slot
+     * thread regardless of the parallel flag.
+     */
+    public QueryServer(CsrGraph graph, ShortestPathSolver solver, SolverOptions options) {
+        this(graph, solver, options, Runtime.getRuntime().availableProcessors(),
+                4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Initializes a server.
+     *
+     * @param graph The graph to answer queries on, which must not change
+     * while the server runs.
+     * @param solver The solver to answer queries with.
+     * @param options The options of every query; queries run on their slot
+     * thread regardless of the parallel flag.
+     * @param numSlots The number of queries that run at the same time.
+     * @param maxQueued The number of accepted queries that may wait for a slot.
+     */
+    public QueryServer(CsrGraph graph, ShortestPathSolver solver, SolverOptions options, int numSlots,
+            int maxQueued) {
+        if (numSlots <= 0) {
+            throw new IllegalArgumentException("numSlots must be positive: " + numSlots);
+        }
+        if (maxQueued <= 0) {
+            throw new IllegalArgumentException("maxQueued must be positive: " + maxQueued);
+        }
+        this.graph = graph;
+        this.solver = solver;
+        // Concurrency comes from the slots; a query forking onto the shared
+        // pool would only compete with the other slots for the same cores
+        this.options = options.withParallel(false);
+        this.slots = new ThreadPoolExecutor(numSlots, numSlots, 0, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(maxQueued), new SlotThreadFactory(), new ThreadPoolExecutor.AbortPolicy());
+        slots.prestartAllCoreThreads();
+    }
+
+    /**
+     * Submits a single-source query.
+     *
+     * @param source The source node.
+     * @return A future for the distances from {@code source}. It fails with
+     * a {@link RejectedExecutionException} if the server is saturated or
+     * closed.
+     */
+    public CompletableFuture<ShortestPathResult> submitSolve(int source) {
+        checkNode(source);
+        return submit(() -> solver.solve(graph, source, options));
+    }
+
+    /**
+     * Submits a point-to-point query.
+     *
+     * @param source The source node.
+     * @param target The target node.
+     * @return A future for the path from {@code source} to {@code target}.
+     * It fails with a {@link RejectedExecutionException} if the server is
+     * saturated or closed.
+     */
+    public CompletableFuture<PointToPointResult> submitQuery(int source, int target) {
+        checkNode(source);
+        checkNode(target);
+        return submit(() -> solver.query(graph, source, target, options));
+    }
+
+    private void checkNode(int node) {
+        if (node < 0 || node >= graph.getNumVertices()) {
+            throw new IllegalArgumentException("node out of range: " + node);
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> query) {
+        long submitted = System.nanoTime();
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            slots.execute(() -> {
+                try {
+                    T result = query.get();
+                    latencies.record(System.nanoTime() - submitted);
+                    completed.increment();
+                    future.complete(result);
+                } catch (RuntimeException | Error e) {
+                    failed.increment();
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Stops accepting queries and waits for the accepted ones to finish. If
+     * the calling thread is interrupted it stops waiting, leaving the
+     * queries to finish in the background, and keeps its interrupt status.
+     */
+    @Override
+    public void close() {
+        slots.shutdown();
+        try {
+            while (!slots.awaitTermination(1, TimeUnit.SECONDS)) {
+                // keep waiting for queries that are still running
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Gets the latency below which the given percentage of completed
+     * queries finished, measured from submission to completion.
+     *
+     * @param percentile The percentage, between 0 and 100.
+     * @return The latency in nanoseconds, or 0 before the first completion.
+     */
+    public long getLatencyPercentile(double percentile) {
+        return latencies.percentile(percentile);
+    }
+
+    /**
+     * Forgets the recorded latencies, for example after a warm-up.
+     */
+    public void resetLatencies() {
+        latencies.reset();
+    }
+
+    /**
+     * Gets the number of queries that returned a result.
+     *
+     * @return The completed count.
+     */
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+
+    /**
+     * Gets the number of accepted queries that threw.
+     *
+     * @return The failed count.
+     */
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    /**
+     * Gets the number of queries turned away because the server was
+     * saturated or closed.
+     *
+     * @return The rejected count.
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Gets the number of accepted queries waiting for a slot.
+     *
+     * @return The queue length.
+     */
+    public int getQueuedCount() {
+        return slots.getQueue().size();
+    }
+
+    private static class SlotThreadFactory implements ThreadFactory {
+
+        private static final AtomicInteger SERVERS = new AtomicInteger();
+
+        private final int server = SERVERS.incrementAndGet();
+        private final AtomicInteger threads = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "query-server-" + server + "-slot-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package utexas.edu.shortestpathalgorithm;
+
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computes the per-vertex radii used by Radius Stepping. The radius
+ * {@code r(v)} of a vertex is the distance from {@code v} to its
+ * {@code rho}-th nearest other vertex (or to the farthest vertex it reaches,
+ * if it reaches fewer). Optionally a shortcut edge is added from every vertex
+ * to each of its {@code rho} nearest vertices, weighted with their exact
+ * distance, which bounds the number of relaxation passes per round.
+ */
+final class RadiusPreprocessing {
+
+    /**
+     * Vertex ranges at or below this size are processed by a single task.
+     */
+    private static final int SEQUENTIAL_THRESHOLD = 256;
+
+    /**
+     * The rho of radii computed when none is given.
+     */
+    static final int DEFAULT_RHO = 16;
+
+    // The input graph is not kept, so a cache keyed by it can still clear
+    private final CsrGraph shortcutGraph;
+    private final int[] radii;
+    private final int rho;
+
+    private RadiusPreprocessing(CsrGraph shortcutGraph, int[] radii, int rho) {
+        this.shortcutGraph = shortcutGraph;
+        this.radii = radii;
+        this.rho = rho;
+    }
+
+    /**
+     * Runs a Dijkstra search truncated after {@code rho} settled vertices
+     * from every vertex of the graph.
+     *
+     * @param graph The graph to preprocess.
+     * @param rho The number of nearest vertices defining each radius.
+     * @param addShortcuts Whether to add shortcut edges to the nearest vertices.
+     * @param runInParallel Whether to process vertices on all cores.
+     * @return The radii, together with any shortcut graph.
+     */
+    static RadiusPreprocessing compute(CsrGraph graph, int rho, boolean addShortcuts, boolean runInParallel) {
+        if (rho <= 0) {
+            throw new IllegalArgumentException("rho must be positive: " + rho);
+        }
+        int V = graph.getNumVertices();
+        int limit = Math.min(rho, Math.max(V - 1, 0));
+        int[] radii = new int[V];
+        // Row v holds the nearest vertices of v, then their distances
+        int[][] nearest = addShortcuts ? new int[V][] : null;
+
+        ThreadLocal<Workspace> workspaces = ThreadLocal.withInitial(() -> new Workspace(V, limit));
+        RadiusTask task = new RadiusTask(graph, limit, radii, nearest, workspaces, 0, V);
+        if (runInParallel) {
+            SolverPool.shared().invoke(task);
+        } else {
+            task.computeRange();
+        }
+
+        CsrGraph shortcuts = addShortcuts ? withShortcuts(graph, nearest) : null;
+        return new RadiusPreprocessing(shortcuts, radii, rho);
+    }
+
+    private static Graph withShortcuts(CsrGraph graph, int[][] nearest) {
+        int V = graph.getNumVertices();
+        int total = Math.toIntExact(graph.getNumEdges());
+        for (int[] row : nearest) {
+            total += row.length / 2;
+        }
+
+        int[] sources = new int[total];
+        int[] destinations = new int[total];
+        int[] weights = new int[total];
+        int i = 0;
+        for (int u = 0; u < V; u++) {
+            for (long e = graph.edgeStart(u), end = graph.edgeEnd(u); e < end; e++) {
+                sources[i] = u;
+                destinations[i] = graph.target(e);
+                weights[i++] = graph.weight(e);
+            }
+            int[] row = nearest[u];
+            int count = row.length / 2;
+            for (int k = 0; k < count; k++) {
+                sources[i] = u;
+                destinations[i] = row[k];
+                weights[i++] = row[count + k];
+            }
+        }
+        return new Graph(V, sources, destinations, weights);
+    }
+
+    /**
+     * Gets the graph Radius Stepping should run on, which is the input graph
+     * plus any shortcut edges.
+     *
+     * @param original The graph that was preprocessed.
+     * @return The preprocessed graph.
+     */
+    CsrGraph getGraph(CsrGraph original) {
+        return shortcutGraph != null ? shortcutGraph : original;
+    }
+
+    /**
+     * Returns whether shortcut edges were added to the graph.
+     *
+     * @return {@code true} if {@link #getGraph} adds shortcuts.
+     */
+    boolean hasShortcuts() {
+        return shortcutGraph != null;
+    }
+
+    /**
+     * Gets the radius of every vertex.
+     *
+     * @return An array of radii indexed by vertex.
+     */
+    int[] getRadii() {
+        return radii;
+    }
+
+    /**
+     * Gets the number of nearest vertices each radius was computed from.
+     *
+     * @return The rho parameter.
+     */
+    int getRho() {
+        return rho;
+    }
+
+    /**
+     * Per-thread search state. Vertices are reset between sources by stamping
+     * them with the source id instead of clearing the arrays.
+     */
+    private static class Workspace {
+
+        final int[] tentative;
+        final int[] mark;
+        final int[] settled;
+        final int[] settledDist;
+        long[] heap = new long[16];
+
+        Workspace(int V, int limit) {
+            tentative = new int[V];
+            mark = new int[V];
+            settled = new int[limit];
+            settledDist = new int[limit];
+        }
+    }
+
+    private static class RadiusTask extends RecursiveAction {
+
+        private final CsrGraph graph;
+        private final int limit;
+        private final int[] radii;
+        private final int[][] nearest;
+        private final ThreadLocal<Workspace> workspaces;
+        private final int from;
+        private final int to;
+
+        RadiusTask(CsrGraph graph, int limit, int[] radii, int[][] nearest, ThreadLocal<Workspace> workspaces, int from, int to) {
+            this.graph = graph;
+            this.limit = limit;
+            this.radii = radii;
+            this.nearest = nearest;
+            this.workspaces = workspaces;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SEQUENTIAL_THRESHOLD) {
+                computeRange();
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new RadiusTask(graph, limit, radii, nearest, workspaces, from, mid),
+                    new RadiusTask(graph, limit, radii, nearest, workspaces, mid, to));
+        }
+
+        void computeRange() {
+            Workspace ws = workspaces.get();
+            int[] tentative = ws.tentative;
+            int[] mark = ws.mark;
+            long[] heap = ws.heap;
+            int[] settled = ws.settled;
+            int[] settledDist = ws.settledDist;
+
+            for (int v = from; v < to; v++) {
+                int stamp = v + 1;
+                int count = 0;
+                int size = 0;
+
+                mark[v] = -stamp; // settled
+                for (long e = graph.edgeStart(v), end = graph.edgeEnd(v); e < end; e++) {
+                    if (relax(graph.target(e), graph.weight(e), stamp, tentative, mark)) {
+                        heap = push(heap, size++, graph.weight(e), graph.target(e));
+                    }
+                }
+
+                while (count < limit && size > 0) {
+                    long top = heap[0];
+                    heap[0] = heap[--size];
+                    siftDown(heap, size);
+
+                    int u = (int) top;
+                    int d = (int) (top >>> 32);
+                    if (mark[u] == -stamp || d != tentative[u]) {
+                        continue; // stale entry
+                    }
+                    mark[u] = -stamp;
+                    settled[count] = u;
+                    settledDist[count++] = d;
+
+                    if (count < limit) {
+                        for (long e = graph.edgeStart(u), end = graph.edgeEnd(u); e < end; e++) {
+                            int w = graph.target(e);
+                            int candidate = d + graph.weight(e);
+                            if (relax(w, candidate, stamp, tentative, mark)) {
+                                heap = push(heap, size++, candidate, w);
+                            }
+                        }
+                    }
+                }
+
+                radii[v] = count == 0 ? 0 : settledDist[count - 1];
+                if (nearest != null) {
+                    int[] row = Arrays.copyOf(settled, 2 * count);
+                    System.arraycopy(settledDist, 0, row, count, count);
+                    nearest[v] = row;
+                }
+            }
+            ws.heap = heap;
+        }
+
+        private static boolean relax(int w, int candidate, int stamp, int[] tentative, int[] mark) {
+            if (mark[w] == -stamp) {
+                return false;
+            }
+            if (mark[w] != stamp || candidate < tentative[w]) {
+                mark[w] = stamp;
+                tentative[w] = candidate;
+                return true;
+            }
+            return false;
+        }
+
+        private static long[] push(long[] heap, int size, int dist, int vertex) {
+            if (size == heap.length) {
+                heap = Arrays.copyOf(heap, size << 1);
+            }
+            long key = ((long) dist << 32) | (vertex & 0xFFFFFFFFL);
+            int i = size;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (heap[parent] <= key) {
+                    break;
+                }
+                heap[i] = heap[parent];
+                i = parent;
+            }
+            heap[i] = key;
+            return heap;
+        }
+
+        private static void siftDown(long[] heap, int size) {
+            long key = heap[0];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && heap[child + 1] < heap[child]) {
+                    child++;
+                }
+                if (heap[child] >= key) {
+                    break;
+                }
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = key;
+        }
+    }
+}
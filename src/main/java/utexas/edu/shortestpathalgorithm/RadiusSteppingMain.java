@@ -6,88 +6,394 @@
 package utexas.edu.shortestpathalgorithm;
 
 import java.util.*;
-import java.util.concurrent.*;
+import java.util.concurrent.ForkJoinPool;
 
 /**
- * Implements the Radius Stepping algorithm for finding shortest paths in a
- * graph.
+ * Implements the Radius Stepping algorithm of Blelloch, Gu, Sun and
+ * Tangwongsan for finding shortest paths in a graph. Every round computes
+ * {@code d_i = min(dist(v) + r(v))} over the unsettled vertices, runs
+ * Bellman-Ford style relaxations among the vertices within {@code d_i} until
+ * none of them improves, and then settles all of them at once.
+ *
+ * <p>Any bound at least the smallest unsettled distance is correct, so an
+ * adaptive run scales every radius by a factor a {@link StepTuner} adjusts
+ * between rounds, trading relaxation passes against the number of rounds.
  */
 class RadiusStepping {
 
-    private final Graph graph;
+    /**
+     * The radius scale of an adaptive run is kept in units of 1/SCALE_UNIT.
+     */
+    private static final int SCALE_UNIT = 8;
+
+    private final CsrGraph original;
     private final int source;
-    private final int[] dist;
+    private final SolverWorkspace workspace;
+    private final long[] state;
+
+    private RadiusPreprocessing preprocessing;
+    private CsrGraph graph;
+    private int rounds;
+    private SolverMetrics metrics;
 
-    private LinkedList<Integer> queue;
+    // Stamps marking settled vertices and deduplicating a relaxation pass
+    private final int[] settledMark;
+    private final int[] phaseMark;
 
     /**
      * Initializes the RadiusStepping algorithm with the given graph and source
-     * node.
+     * node. Radii are computed on the first call to {@link #radiusStep},
+     * for {@link RadiusPreprocessing#DEFAULT_RHO} unless it names another
+     * rho.
      *
      * @param graph The graph to find shortest paths in.
      * @param source The source node.
      */
-    public RadiusStepping(Graph graph, int source) {
-        this.graph = graph;
+    public RadiusStepping(CsrGraph graph, int source) {
+        this(graph, null, source, new SolverWorkspace(graph.getNumVertices()));
+    }
+
+    /**
+     * Initializes the RadiusStepping algorithm with radii that were computed
+     * ahead of time, so they can be shared across many sources.
+     *
+     * @param graph The graph the radii were computed for.
+     * @param preprocessing The radii and any shortcuts to search with.
+     * @param source The source node.
+     */
+    public RadiusStepping(CsrGraph graph, RadiusPreprocessing preprocessing, int source) {
+        this(graph, preprocessing, source, new SolverWorkspace(graph.getNumVertices()));
+    }
+
+    /**
+     * Initializes the RadiusStepping algorithm with precomputed radii on a
+     * reused workspace. The distances of the workspace's previous query are
+     * discarded.
+     *
+     * @param graph The graph the radii were computed for.
+     * @param preprocessing The radii and any shortcuts to search with, or
+     * {@code null} to compute radii on the first run.
+     * @param source The source node.
+     * @param workspace A workspace sized for the graph.
+     */
+    public RadiusStepping(CsrGraph graph, RadiusPreprocessing preprocessing, int source, SolverWorkspace workspace) {
+        this.original = graph;
+        this.preprocessing = preprocessing;
         this.source = source;
-        this.dist = new int[graph.getAdjacencyList().length];
-        queue = new LinkedList<>();
-        Arrays.fill(dist, Integer.MAX_VALUE); // Initialize distances to infinity
+        this.workspace = workspace;
+        workspace.reset();
+        this.state = workspace.state;
+        this.settledMark = workspace.mark(0);
+        this.phaseMark = workspace.mark(1);
+    }
+
+    /**
+     * Sets the metrics that following runs record into. Without metrics the
+     * engine reads no clocks and updates no counters.
+     *
+     * @param metrics The metrics, or {@code null} to collect none.
+     */
+    public void setMetrics(SolverMetrics metrics) {
+        this.metrics = metrics;
     }
 
     /**
      * Runs the Radius Stepping algorithm with the specified radius value.
      *
-     * @param radius The radius value for the algorithm.
+     * @param radius The number of nearest vertices that defines each vertex
+     * radius. Radii are recomputed if they were built for a different value.
      */
     public void radiusStep(int radius, boolean runInParallel) {
-        int numThreads = runInParallel ? Runtime.getRuntime().availableProcessors() : 1;
-        ForkJoinPool pool = new ForkJoinPool(numThreads);
-
-        queue.add(source);
-        dist[source] = 0; // Set the source node's distance to 0
+        radiusStep(radius, false, runInParallel);
+    }
 
-        while (!queue.isEmpty()) {
-            LinkedList<Integer> nodes = queue;
-            queue = new LinkedList<>();
-            for (Integer n: nodes) {
-                pool.invoke(new RadiusStepTask(n));
-            }
-            while(true) {if (pool.awaitQuiescence(100, TimeUnit.SECONDS)) break;};
+    /**
+     * Runs the Radius Stepping algorithm with the specified radius value,
+     * optionally on the graph plus a shortcut edge from every vertex to each
+     * of its {@code radius} nearest vertices. The shortcuts bound the
+     * relaxation passes per round at the cost of that many extra edges per
+     * vertex.
+     *
+     * @param radius The number of nearest vertices that defines each vertex
+     * radius.
+     * @param addShortcuts Whether to search the graph with shortcuts. Radii
+     * are recomputed if they were built for a different value or setting.
+     */
+    public void radiusStep(int radius, boolean addShortcuts, boolean runInParallel) {
+        if (preprocessing == null || preprocessing.getRho() != radius
+                || preprocessing.hasShortcuts() != addShortcuts) {
+            preprocessing = RadiusPreprocessing.compute(original, radius, addShortcuts, runInParallel);
         }
-        pool.shutdown();
+        radiusStep(runInParallel);
     }
 
-    private class RadiusStepTask extends RecursiveAction {
+    /**
+     * Runs the Radius Stepping algorithm with the radii this instance was
+     * created with, or computed so far.
+     */
+    public void radiusStep(boolean runInParallel) {
+        radiusStep(runInParallel ? SolverPool.shared() : null);
+    }
 
-        private final int node;
+    /**
+     * Runs the Radius Stepping algorithm with the radii this instance was
+     * created with, or computed so far, on the given pool.
+     *
+     * @param pool The pool to relax frontiers on, or {@code null} to run on
+     * the calling thread.
+     */
+    public void radiusStep(ForkJoinPool pool) {
+        radiusStep(pool, false);
+    }
 
-        RadiusStepTask(int node) {
-            this.node = node;
+    /**
+     * Runs the Radius Stepping algorithm with the radii this instance was
+     * created with, or computed so far, on the given pool, optionally
+     * adapting the scale of the radii between rounds. An instance created
+     * without radii computes them for {@link RadiusPreprocessing#DEFAULT_RHO}
+     * first.
+     *
+     * @param pool The pool to relax frontiers on, or {@code null} to run on
+     * the calling thread.
+     * @param adaptive Whether to scale the radii as the run progresses.
+     */
+    public void radiusStep(ForkJoinPool pool, boolean adaptive) {
+        if (preprocessing == null) {
+            preprocessing = RadiusPreprocessing.compute(original, RadiusPreprocessing.DEFAULT_RHO, false,
+                    pool != null);
         }
+        graph = preprocessing.getGraph(original);
+        StepTuner tuner = adaptive ? new StepTuner(SCALE_UNIT, 1, SCALE_UNIT * SCALE_UNIT, 1,
+                StepTuner.targetFrontier(pool, FrontierRelaxer.verticesPerLeaf(graph))) : null;
+        long scale = SCALE_UNIT;
+        int[] radii = preprocessing.getRadii();
+        int settledStamp = workspace.nextStamp();
+        IntList candidates = workspace.candidates;
+        IntList active = workspace.frontier;
+        IntList improved = workspace.improved;
+        IntList reached = workspace.reached;
+        long runStart = metrics == null ? 0 : System.nanoTime();
+        long settledCount = 1;
+
+        state[source] = Relaxation.pack(0, -1); // Set the source node's distance to 0
+        workspace.touch(source);
+        settledMark[source] = settledStamp;
+        active.add(source);
+        relax(active, pool, improved);
+        addCandidates(improved);
 
-        @Override
-        protected void compute() {
-            for (Edge edge : graph.getAdjacencyList()[node]) {
-                int neighbour = edge.dest;
-                int weight = edge.weight;
+        int round = 0;
+        while (true) {
+            long phaseStart = metrics == null ? 0 : System.nanoTime();
+            // d_i = min(dist(v) + r(v)) over reached, unsettled vertices
+            long bound = Long.MAX_VALUE;
+            int kept = 0;
+            for (int i = 0; i < candidates.size(); i++) {
+                int v = candidates.get(i);
+                if (settledMark[v] != settledStamp) {
+                    candidates.set(kept++, v);
+                    bound = Math.min(bound, Relaxation.distance(state[v]) + radii[v] * scale / SCALE_UNIT);
+                }
+            }
+            candidates.truncate(kept);
+            if (kept == 0) {
+                break;
+            }
+            round++;
+
+            active.clear();
+            for (int i = 0; i < candidates.size(); i++) {
+                int v = candidates.get(i);
+                if (Relaxation.distance(state[v]) <= bound) {
+                    active.add(v);
+                }
+            }
+
+            reached.clear();
+            reached.addAll(active);
+            if (metrics != null) {
+                phaseStart = metrics.recordPhase(SolverMetrics.Phase.SELECT, phaseStart);
+            }
+            long relaxedCount = 0;
+            int passes = 0;
+            while (!active.isEmpty()) {
+                relaxedCount += active.size();
+                passes++;
+                relax(active, pool, improved);
+                addCandidates(improved);
+
+                // Only vertices that improved to within the bound need another pass
+                int phase = workspace.nextStamp();
+                active.clear();
+                for (int i = 0; i < improved.size(); i++) {
+                    int v = improved.get(i);
+                    if (Relaxation.distance(state[v]) <= bound && phaseMark[v] != phase) {
+                        phaseMark[v] = phase;
+                        active.add(v);
+                        reached.add(v);
+                    }
+                }
+            }
+
+            for (int i = 0; i < reached.size(); i++) {
+                int v = reached.get(i);
+                if (settledMark[v] != settledStamp) {
+                    settledMark[v] = settledStamp;
+                    settledCount++;
+                }
+            }
+            if (metrics != null) {
+                metrics.recordPhase(SolverMetrics.Phase.RELAX, phaseStart);
+                metrics.recordStep(false);
+            }
+            if (tuner != null && tuner.record(relaxedCount, reached.size(), passes)) {
+                scale = tuner.get();
+            }
+        }
+        rounds = round;
+        workspace.unpackState();
+        if (preprocessing.hasShortcuts()) {
+            repairPredecessors();
+        }
+        if (metrics != null) {
+            metrics.recordRun(settledCount, System.nanoTime() - runStart);
+        }
+    }
 
-                if (dist[node] + weight < dist[neighbour]) {
-                    dist[neighbour] = dist[node] + weight;
-                    queue.add(neighbour);
+    /**
+     * Replaces predecessors reached over shortcut edges, which skip the
+     * vertices in between, with the tail of an original edge that is tight
+     * at the final distances. The tight edges are followed outwards from
+     * the source and each vertex takes the first that reaches it, so ties
+     * over zero-weight edges cannot close a cycle.
+     */
+    private void repairPredecessors() {
+        int[] dist = workspace.dist;
+        int[] predecessors = workspace.predecessors;
+        int stamp = workspace.nextStamp();
+        IntList queue = workspace.frontier;
+        queue.clear();
+        queue.add(source);
+        phaseMark[source] = stamp;
+        for (int head = 0; head < queue.size(); head++) {
+            int u = queue.get(head);
+            for (long e = original.edgeStart(u), end = original.edgeEnd(u); e < end; e++) {
+                int v = original.target(e);
+                if (phaseMark[v] != stamp && dist[u] + original.weight(e) == dist[v]) {
+                    phaseMark[v] = stamp;
+                    predecessors[v] = u;
+                    queue.add(v);
                 }
             }
         }
     }
 
+    /**
+     * Gets the number of rounds the last run needed.
+     *
+     * @return The number of rounds.
+     */
+    int getRounds() {
+        return rounds;
+    }
+
+    private void addCandidates(IntList improved) {
+        IntList candidates = workspace.candidates;
+        for (int i = 0; i < improved.size(); i++) {
+            int v = improved.get(i);
+            if (workspace.touch(v)) {
+                candidates.add(v);
+            }
+        }
+    }
+
+    /**
+     * Relaxes every outgoing edge of the nodes in {@code nodes}, collecting
+     * each neighbour whose distance was lowered into {@code improved}.
+     */
+    private void relax(IntList nodes, ForkJoinPool pool, IntList improved) {
+        workspace.relaxer().relax(graph, nodes, FrontierRelaxer.Edges.ALL, 0, pool, metrics, improved);
+    }
+
     /**
      * Gets the computed shortest distances from the source node to all other
-     * nodes.
+     * nodes. When running on a reused workspace the array belongs to it and
+     * is overwritten by its next query.
      *
      * @return An array of shortest distances.
      */
     public int[] getShortestDistances() {
-        return dist;
+        return workspace.dist;
+    }
+
+    /**
+     * Gets the predecessor of every node on its shortest path from the source
+     * node, or -1 for the source and unreachable nodes. Shares the lifetime
+     * of {@link #getShortestDistances()}.
+     *
+     * @return An array of predecessors.
+     */
+    public int[] getPredecessors() {
+        return workspace.predecessors;
+    }
+}
+
+/**
+ * Exposes {@link RadiusStepping} as a {@link ShortestPathSolver}. The radii
+ * of each graph are computed on its first query and reused until the graph
+ * changes.
+ */
+class RadiusSteppingSolver implements ShortestPathSolver {
+
+    static final String NAME = "radius";
+
+    /**
+     * The rho used when the options leave the radius to the solver, which
+     * then also adapts the scale of the radii between rounds.
+     */
+    static final int DEFAULT_RHO = RadiusPreprocessing.DEFAULT_RHO;
+
+    private final Map<CsrGraph, Prepared> preprocessed = Collections.synchronizedMap(new WeakHashMap<>());
+    private final WorkspacePool workspaces = new WorkspacePool();
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public ShortestPathResult solve(CsrGraph graph, int source, SolverOptions options) {
+        boolean adaptive = options.getRadius() == SolverOptions.AUTO;
+        int rho = adaptive ? DEFAULT_RHO : options.getRadius();
+        Prepared entry = preprocessed.get(graph);
+        if (entry == null || entry.version != graph.getVersion() || entry.preprocessing.getRho() != rho
+                || entry.preprocessing.hasShortcuts() != options.isRadiusShortcuts()) {
+            long version = graph.getVersion();
+            entry = new Prepared(version, RadiusPreprocessing.compute(graph, rho, options.isRadiusShortcuts(),
+                    options.isRunInParallel()));
+            preprocessed.put(graph, entry);
+        }
+        SolverWorkspace workspace = workspaces.acquire(graph);
+        try {
+            RadiusStepping radiusStepping = new RadiusStepping(graph, entry.preprocessing, source, workspace);
+            radiusStepping.setMetrics(options.getMetrics());
+            radiusStepping.radiusStep(options.isRunInParallel() ? SolverPool.shared() : null, adaptive);
+            return ShortestPathResult.copyOf(NAME, source, radiusStepping.getShortestDistances(),
+                    radiusStepping.getPredecessors(), options.isOffHeapDistances());
+        } finally {
+            workspaces.release(workspace);
+        }
+    }
+
+    private static class Prepared {
+
+        final long version;
+        final RadiusPreprocessing preprocessing;
+
+        Prepared(long version, RadiusPreprocessing preprocessing) {
+            this.version = version;
+            this.preprocessing = preprocessing;
+        }
     }
 }
 
@@ -118,44 +424,18 @@ public class RadiusSteppingMain {
         int radius2 = 2; // Radius value for the Radius Stepping algorithm
 
         runRadiusStepping(numVertices2, maxWeight2, source2, radius2, true, true);
+
+        // Test Case 3: The same kind of graph with shortcut edges to the rho nearest vertices
+        Graph randomGraph = Graph.fromEdges(generateRandomConnectedGraph(numVertices2, maxWeight2).toArray(new int[0][]));
+        RadiusStepping radiusStepping = new RadiusStepping(randomGraph, source2);
+        radiusStepping.radiusStep(radius2, true, true);
+        System.out.println("With shortcuts, " + radiusStepping.getRounds() + " rounds | Distance to node "
+                + (numVertices2 - 1) + ": " + radiusStepping.getShortestDistances()[numVertices2 - 1] + "\n");
     }
 
     public static long runRadiusStepping(int[][] edges, int source, int radius, boolean outputShortestPath, boolean runInParallel) {
-        int numVertices = Arrays.stream(edges)
-                .flatMapToInt(Arrays::stream)
-                .max()
-                .orElse(0) + 1;
-
-        // Add edges to the graph
-        Graph graph = new Graph(numVertices);
-        for (int[] edge : edges) {
-            graph.addEdge(edge[0], edge[1], edge[2]);
-        }
-
-        // Run the parallel Radius Stepping algorithm
-        RadiusStepping radiusStepping = new RadiusStepping(graph, source);
-
-        long startTime = System.currentTimeMillis(); // Record start time
-        radiusStepping.radiusStep(radius, runInParallel);
-        long endTime = System.currentTimeMillis(); // Record end time
-
-        int[] shortestDistances = radiusStepping.getShortestDistances();
-
-        if (outputShortestPath) {
-            // Print the shortest distances and execution time
-            System.out.println("Shortest distances from node " + source + ":");
-            for (int i = 0; i < numVertices; i++) {
-                System.out.println("Node " + i + ": " + shortestDistances[i]);
-            }
-        }
-
-        long executionTime = endTime - startTime;
-        long totaDistance = 0;
-        for (int i = 0; i < numVertices; i++) {
-            totaDistance += shortestDistances[i];
-        }
-        System.out.println("Execution time: " + executionTime + " milliseconds | Total Distance: " + totaDistance + "\n");
-        return executionTime;
+        SolverOptions options = SolverOptions.defaults().withRadius(radius).withParallel(runInParallel);
+        return ShortestPathCompare.runSolver(new RadiusSteppingSolver(), Graph.fromEdges(edges), source, options, outputShortestPath);
     }
 
     public static long runRadiusStepping(int numVertices, int maxWeight, int source, int radius, boolean outputShortestPath, boolean runInParallel) {
@@ -163,22 +443,11 @@ public class RadiusSteppingMain {
         return runRadiusStepping(edges.toArray(new int[0][]), source, radius, outputShortestPath, runInParallel);
     }
 
+    /**
+     * Builds a complete graph as an edge list; see
+     * {@link ShortestPathCompare#generateRandomConnectedGraph(int, int)}.
+     */
     public static List<int[]> generateRandomConnectedGraph(int numVertices, int maxWeight) {
-        List<int[]> edges = new ArrayList<>();
-        Random random = new Random();
-
-        // Create a fully connected graph
-        for (int u = 0; u < numVertices; u++) {
-            for (int v = u + 1; v < numVertices; v++) {
-                int weight = random.nextInt(maxWeight) + 1; // Generate a random weight
-                edges.add(new int[]{u, v, weight});
-                edges.add(new int[]{v, u, weight}); // Add reverse edge for undirected graph
-            }
-        }
-
-        // Shuffle the edges randomly to create a random connected graph
-        Collections.shuffle(edges);
-
-        return edges;
+        return new ArrayList<>(Arrays.asList(ShortestPathCompare.generateRandomConnectedGraph(numVertices, maxWeight)));
     }
 }
@@ -0,0 +1,59 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package utexas.edu.shortestpathalgorithm;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs a loop over an index range as a fork/join task, halving the range
+ * until the halves are small enough to run on one thread.
+ */
+final class RangeTask extends RecursiveAction {
+
+    /**
+     * The body of the loop over one part of the range.
+     */
+    interface Range {
+
+        /**
+         * Runs the loop body for every index from {@code from} to {@code to}.
+         *
+         * @param from The first index.
+         * @param to One past the last index.
+         */
+        void run(int from, int to);
+    }
+
+    private final int from;
+    private final int to;
+    private final int grain;
+    private final Range range;
+
+    /**
+     * Initializes a task.
+     *
+     * @param from The first index.
+     * @param to One past the last index.
+     * @param grain The largest part run by a single task.
+     * @param range The loop body.
+     */
+    RangeTask(int from, int to, int grain, Range range) {
+        this.from = from;
+        this.to = to;
+        this.grain = grain;
+        this.range = range;
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from <= grain) {
+            range.run(from, to);
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        invokeAll(new RangeTask(from, mid, grain, range), new RangeTask(mid, to, grain, range));
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package utexas.edu.shortestpathalgorithm;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Lock-free edge relaxation shared by the parallel stepping engines. The
+ * tentative distance and the predecessor of a vertex are packed into one
+ * {@code long}, distance in the high half, so a single compare-and-set
+ * updates both and they can never be observed out of step.
+ */
+final class Relaxation {
+
+    /**
+     * The packed state of a vertex that has not been reached.
+     */
+    static final long UNREACHED = pack(Integer.MAX_VALUE, -1);
+
+    private static final VarHandle LONG_ARRAY = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private Relaxation() {
+    }
+
+    /**
+     * Packs a distance and a predecessor into one state word.
+     *
+     * @param distance The distance.
+     * @param predecessor The predecessor vertex, or -1 for none.
+     * @return The packed state.
+     */
+    static long pack(int distance, int predecessor) {
+        return ((long) distance << 32) | (predecessor & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Extracts the distance from a packed state.
+     *
+     * @param state The packed state.
+     * @return The distance.
+     */
+    static int distance(long state) {
+        return (int) (state >>> 32);
+    }
+
+    /**
+     * Extracts the predecessor from a packed state.
+     *
+     * @param state The packed state.
+     * @return The predecessor vertex, or -1 for none.
+     */
+    static int predecessor(long state) {
+        return (int) state;
+    }
+
+    /**
+     * Atomically replaces the state of {@code v} with
+     * {@code (candidate, predecessor)} if the candidate distance is smaller,
+     * retrying the compare-and-set until it succeeds or another thread has
+     * already written a distance that is at least as short.
+     *
+     * @param state The packed state array.
+     * @param v The vertex to relax.
+     * @param candidate The tentative distance offered for {@code v}.
+     * @param predecessor The vertex the candidate distance arrives from.
+     * @return {@code true} if this call lowered the distance.
+     */
+    static boolean relaxMin(long[] state, int v, int candidate, int predecessor) {
+        long current = (long) LONG_ARRAY.getVolatile(state, v);
+        while (candidate < distance(current)) {
+            if (LONG_ARRAY.compareAndSet(state, v, current, pack(candidate, predecessor))) {
+                return true;
+            }
+            current = (long) LONG_ARRAY.getVolatile(state, v);
+        }
+        return false;
+    }
+
+    /**
+     * Reads the distance of {@code v} with volatile semantics.
+     *
+     * @param state The packed state array.
+     * @param v The vertex.
+     * @return The current distance of {@code v}.
+     */
+    static int distance(long[] state, int v) {
+        return distance((long) LONG_ARRAY.getVolatile(state, v));
+    }
+}
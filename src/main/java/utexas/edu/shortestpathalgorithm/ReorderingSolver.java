@@ -0,0 +1,106 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package utexas.edu.shortestpathalgorithm;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.Function;
+
+/**
+ * Runs another solver on a renumbered copy of the graph. The first query on
+ * a graph, and the first after the graph changes, computes a
+ * {@link VertexOrdering} and builds the renumbered copy; every query then
+ * maps its source and target into the new ids, runs the underlying solver
+ * on the copy, and maps the result back, so callers see original ids
+ * throughout.
+ *
+ * <p>The renumbering costs one pass over the graph and a second copy of
+ * its edges, which pays off when many queries run on the same large graph.
+ */
+public class ReorderingSolver implements ShortestPathSolver {
+
+    private final ShortestPathSolver solver;
+    private final Function<CsrGraph, VertexOrdering> ordering;
+    private final Map<CsrGraph, Prepared> prepared = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * Initializes a solver that renumbers graphs by Reverse Cuthill-McKee.
+     *
+     * @param solver The solver to run on the renumbered graphs.
+     */
+    public ReorderingSolver(ShortestPathSolver solver) {
+        this(solver, VertexOrdering::reverseCuthillMcKee);
+    }
+
+    /**
+     * Initializes a reordering solver.
+     *
+     * @param solver The solver to run on the renumbered graphs.
+     * @param ordering Computes the ordering of a graph, for example
+     * {@code VertexOrdering::breadthFirst}.
+     */
+    public ReorderingSolver(ShortestPathSolver solver, Function<CsrGraph, VertexOrdering> ordering) {
+        this.solver = solver;
+        this.ordering = ordering;
+    }
+
+    @Override
+    public String getName() {
+        return solver.getName();
+    }
+
+    @Override
+    public ShortestPathResult solve(CsrGraph graph, int source, SolverOptions options) {
+        Prepared entry = prepare(graph);
+        // Solve on the heap; the translated copy is what the caller keeps
+        ShortestPathResult result = solver.solve(entry.reordered, entry.ordering.toReordered(source),
+                options.withOffHeapDistances(false));
+        return entry.ordering.toOriginal(result, options.isOffHeapDistances());
+    }
+
+    @Override
+    public PointToPointResult query(CsrGraph graph, int source, int target, SolverOptions options) {
+        Prepared entry = prepare(graph);
+        PointToPointResult result = solver.query(entry.reordered, entry.ordering.toReordered(source),
+                entry.ordering.toReordered(target), options);
+        return entry.ordering.toOriginal(result);
+    }
+
+    /**
+     * Gets the ordering the solver uses for a graph, computing it if needed.
+     *
+     * @param graph The graph.
+     * @return The ordering.
+     */
+    public VertexOrdering orderingOf(CsrGraph graph) {
+        return prepare(graph).ordering;
+    }
+
+    private Prepared prepare(CsrGraph graph) {
+        Prepared entry = prepared.get(graph);
+        if (entry == null || entry.version != graph.getVersion()) {
+            long version = graph.getVersion();
+            VertexOrdering order = ordering.apply(graph);
+            entry = new Prepared(version, order, order.apply(graph));
+            prepared.put(graph, entry);
+        }
+        return entry;
+    }
+
+    private static class Prepared {
+
+        final long version;
+        final VertexOrdering ordering;
+        final Graph reordered;
+
+        Prepared(long version, VertexOrdering ordering, Graph reordered) {
+            this.version = version;
+            this.ordering = ordering;
+            this.reordered = reordered;
+        }
+    }
+}
@@ -0,0 +1,358 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package utexas.edu.shortestpathalgorithm;
+
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps completed single-source results so that repeated queries for the
+ * same source are answered without searching. Entries are keyed by graph,
+ * graph version, source and solver name, and the least recently used ones
+ * are evicted once the cached arrays exceed a byte budget. Arrays may be
+ * stored compressed with {@link IntArrayCodec}, trading a decode per hit for
+ * several times more entries in the same budget.
+ *
+ * <p>A result computed on one version of a {@link DynamicGraph} is never
+ * returned for another, and the entries of a dynamic graph are dropped as
+ * soon as it is modified, so their bytes are freed immediately. The cache
+ * refers to graphs only weakly, and a dynamic graph refers to the cache
+ * only weakly.
+ */
+public final class ResultCache {
+
+    /**
+     * The estimated bytes an entry occupies besides its arrays.
+     */
+    private static final int ENTRY_OVERHEAD = 96;
+
+    private final long maxBytes;
+    private final boolean compress;
+
+    // Guarded by this
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Long, Set<Key>> keysByGraph = new HashMap<>();
+    private final WeakHashMap<CsrGraph, Long> graphIds = new WeakHashMap<>();
+    private long nextGraphId;
+    private long sizeBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * Initializes an empty cache.
+     *
+     * @param maxBytes The most bytes the cached results may occupy.
+     * @param compress Whether to store results compressed.
+     */
+    public ResultCache(long maxBytes, boolean compress) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes must be positive: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+        this.compress = compress;
+    }
+
+    /**
+     * Looks up the result of a query.
+     *
+     * @param graph The graph that was searched.
+     * @param source The source node.
+     * @param solverName The name of the solver that answered the query.
+     * @return A copy of the cached result, or {@code null} if there is none
+     * for the current version of the graph.
+     */
+    public ShortestPathResult get(CsrGraph graph, int source, String solverName) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(new Key(graphId(graph), graph.getVersion(), source, solverName));
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.toResult(solverName, source);
+    }
+
+    /**
+     * Stores the result of a query, evicting the least recently used results
+     * if the cache is over budget. A result larger than the whole budget is
+     * not stored.
+     *
+     * @param graph The graph that was searched.
+     * @param version The version of the graph the result was computed for.
+     * @param solverName The name of the solver that answered the query.
+     * @param result The result.
+     */
+    public void put(CsrGraph graph, long version, String solverName, ShortestPathResult result) {
+        Entry entry = compress ? Entry.compressed(result) : Entry.plain(result);
+        if (entry.bytes > maxBytes) {
+            return;
+        }
+        synchronized (this) {
+            long id = graphId(graph);
+            if (graph.getVersion() != version) {
+                return; // modified while the query ran
+            }
+            Key key = new Key(id, version, result.getSource(), solverName);
+            Entry previous = entries.put(key, entry);
+            if (previous != null) {
+                sizeBytes -= previous.bytes;
+            }
+            keysByGraph.computeIfAbsent(id, k -> new HashSet<>()).add(key);
+            sizeBytes += entry.bytes;
+
+            Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+            while (sizeBytes > maxBytes) {
+                Map.Entry<Key, Entry> evicted = eldest.next();
+                eldest.remove();
+                sizeBytes -= evicted.getValue().bytes;
+                forget(evicted.getKey());
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Drops every result cached for a graph.
+     *
+     * @param graph The graph.
+     */
+    public synchronized void invalidate(CsrGraph graph) {
+        Long id = graphIds.get(graph);
+        if (id != null) {
+            invalidateGraph(id);
+        }
+    }
+
+    private synchronized void invalidateGraph(long id) {
+        Set<Key> keys = keysByGraph.remove(id);
+        if (keys == null) {
+            return;
+        }
+        for (Key key : keys) {
+            sizeBytes -= entries.remove(key).bytes;
+            invalidations.increment();
+        }
+    }
+
+    /**
+     * Drops every cached result. The counters are kept.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        keysByGraph.clear();
+        sizeBytes = 0;
+    }
+
+    private void forget(Key key) {
+        Set<Key> keys = keysByGraph.get(key.graphId);
+        keys.remove(key);
+        if (keys.isEmpty()) {
+            keysByGraph.remove(key.graphId);
+        }
+    }
+
+    /**
+     * Assigns every graph a stable id the first time it is seen, and drops a
+     * dynamic graph's entries whenever it changes.
+     */
+    private synchronized long graphId(CsrGraph graph) {
+        Long id = graphIds.get(graph);
+        if (id == null) {
+            long assigned = nextGraphId++;
+            id = assigned;
+            graphIds.put(graph, id);
+            if (graph instanceof DynamicGraph) {
+                DynamicGraph dynamic = (DynamicGraph) graph;
+                dynamic.addListener(new Invalidator(this, dynamic, assigned));
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Gets the number of lookups that found a result.
+     *
+     * @return The hit count.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Gets the number of lookups that found nothing.
+     *
+     * @return The miss count.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Gets the fraction of lookups that found a result.
+     *
+     * @return The hit ratio, or 0 before the first lookup.
+     */
+    public double getHitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /**
+     * Gets the number of results dropped to stay within the byte budget.
+     *
+     * @return The eviction count.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Gets the number of results dropped because their graph changed or was
+     * invalidated.
+     *
+     * @return The invalidation count.
+     */
+    public long getInvalidationCount() {
+        return invalidations.sum();
+    }
+
+    /**
+     * Gets the estimated bytes the cached results occupy.
+     *
+     * @return The cache size in bytes.
+     */
+    public synchronized long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    /**
+     * Gets the number of cached results.
+     *
+     * @return The entry count.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Drops a dynamic graph's entries when it changes. The cache is held
+     * weakly so that a graph outliving it does not keep it alive; once the
+     * cache is gone, the next change unregisters the listener.
+     */
+    private static final class Invalidator implements DynamicGraph.EdgeChangeListener {
+
+        private final WeakReference<ResultCache> cache;
+        private final DynamicGraph graph;
+        private final long graphId;
+
+        Invalidator(ResultCache cache, DynamicGraph graph, long graphId) {
+            this.cache = new WeakReference<>(cache);
+            this.graph = graph;
+            this.graphId = graphId;
+        }
+
+        @Override
+        public void edgeChanged(int u, int v, int oldWeight, int newWeight) {
+            ResultCache target = cache.get();
+            if (target == null) {
+                graph.removeListener(this);
+            } else {
+                target.invalidateGraph(graphId);
+            }
+        }
+    }
+
+    private static final class Key {
+
+        final long graphId;
+        final long version;
+        final int source;
+        final String solverName;
+
+        Key(long graphId, long version, int source, String solverName) {
+            this.graphId = graphId;
+            this.version = version;
+            this.source = source;
+            this.solverName = solverName;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return graphId == other.graphId && version == other.version && source == other.source
+                    && solverName.equals(other.solverName);
+        }
+
+        @Override
+        public int hashCode() {
+            int h = Long.hashCode(graphId);
+            h = 31 * h + Long.hashCode(version);
+            h = 31 * h + source;
+            return 31 * h + solverName.hashCode();
+        }
+    }
+
+    /**
+     * The arrays of one result, either as they are or compressed.
+     */
+    private static final class Entry {
+
+        final int numVertices;
+        final int[] distances;
+        final int[] predecessors;
+        final byte[] packedDistances;
+        final byte[] packedPredecessors;
+        final long bytes;
+
+        private Entry(int numVertices, int[] distances, int[] predecessors, byte[] packedDistances,
+                byte[] packedPredecessors, long bytes) {
+            this.numVertices = numVertices;
+            this.distances = distances;
+            this.predecessors = predecessors;
+            this.packedDistances = packedDistances;
+            this.packedPredecessors = packedPredecessors;
+            this.bytes = bytes + ENTRY_OVERHEAD;
+        }
+
+        static Entry plain(ShortestPathResult result) {
+            int[] distances = result.getDistances().clone();
+            int[] predecessors = result.getPredecessors().clone();
+            return new Entry(distances.length, distances, predecessors, null, null, 8L * distances.length);
+        }
+
+        static Entry compressed(ShortestPathResult result) {
+            int[] distances = result.getDistances();
+            byte[] packedDistances = IntArrayCodec.encode(distances, false);
+            byte[] packedPredecessors = IntArrayCodec.encode(result.getPredecessors(), true);
+            return new Entry(distances.length, null, null, packedDistances, packedPredecessors,
+                    (long) packedDistances.length + packedPredecessors.length);
+        }
+
+        ShortestPathResult toResult(String solverName, int source) {
+            if (distances != null) {
+                return new ShortestPathResult(solverName, source, distances.clone(), predecessors.clone());
+            }
+            return new ShortestPathResult(solverName, source, IntArrayCodec.decode(packedDistances, numVertices, false),
+                    IntArrayCodec.decode(packedPredecessors, numVertices, true));
+        }
+    }
+}
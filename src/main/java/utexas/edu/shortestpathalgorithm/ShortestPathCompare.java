@@ -6,11 +6,15 @@
 package utexas.edu.shortestpathalgorithm;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 public class ShortestPathCompare {
 
@@ -24,8 +28,17 @@ public class ShortestPathCompare {
 
     private static final Map<String, Long> TIMING_MAP = new HashMap<>();
 
+    private static final SolverRegistry SOLVERS = SolverRegistry.createDefault();
+
     public static void main(String[] args) {
 //        singleTests();
+//        batchTest();
+//        metricsTest();
+//        serverTest();
+//        scaleTest();
+//        reorderTest();
+//        altTest();
+//        chTest();
         loopingTest();
     }
 
@@ -89,6 +102,244 @@ public class ShortestPathCompare {
 
     }
 
+    /**
+     * Times the same sources answered one query at a time and as a single
+     * batch on one graph.
+     */
+    public static void batchTest() {
+        Random random = new Random();
+        int numVertices = 1000; // Number of vertices for the random graph
+        int maxWeight = 1000; // Maximum edge weight for the random graph
+        int batchSize = 64; // Number of sources per batch
+
+        Graph graph = Graph.fromEdges(generateRandomConnectedGraph(numVertices, maxWeight));
+        SolverOptions options = SolverOptions.defaults().withParallel(RUN_IN_PARALLEL);
+        int[] sources = new int[batchSize];
+        for (int i = 0; i < batchSize; i++) {
+            sources[i] = random.nextInt(numVertices);
+        }
+
+        long startTime = System.currentTimeMillis();
+        for (int source : sources) {
+            SOLVERS.get(DijkstraSolver.NAME).solve(graph, source, options);
+        }
+        System.out.println("One at a time: " + (System.currentTimeMillis() - startTime) + " milliseconds");
+
+        startTime = System.currentTimeMillis();
+        new BatchSolver().solve(graph, sources, options);
+        System.out.println("Batch: " + (System.currentTimeMillis() - startTime) + " milliseconds");
+    }
+
+    /**
+     * Runs the same queries serially and in parallel with metrics, to show
+     * where the time goes when the parallel run is the slower one.
+     */
+    public static void metricsTest() {
+        Random random = new Random();
+        int numVertices = 25; // Number of vertices for the random graph
+        int maxWeight = 2; // Maximum edge weight for the random graph
+        int delta = 200000; // Delta value for Delta Stepping
+        int radius = 200000; // Radius value for Radius Stepping
+
+        Graph graph = Graph.fromEdges(generateRandomConnectedGraph(numVertices, maxWeight));
+        for (boolean runInParallel : new boolean[]{false, true}) {
+            SolverMetrics metrics = new SolverMetrics();
+            SolverOptions options = SolverOptions.defaults().withDelta(delta).withRadius(radius)
+                    .withParallel(runInParallel).withMetrics(metrics);
+            for (String name : new String[]{DeltaSteppingSolver.NAME, RadiusSteppingSolver.NAME}) {
+                SolverMetrics.Snapshot before = metrics.snapshot();
+                for (int i = 0; i < LOOP; i++) {
+                    SOLVERS.get(name).solve(graph, random.nextInt(numVertices), options);
+                }
+                System.out.println((runInParallel ? "Parallel " : "Serial ") + name + ": "
+                        + metrics.snapshot().minus(before));
+            }
+        }
+    }
+
+    /**
+     * Pushes point-to-point queries through a query server as fast as it
+     * accepts them, backing off on rejection, and prints the throughput and
+     * latency percentiles.
+     */
+    public static void serverTest() {
+        Random random = new Random();
+        int numVertices = 1000; // Number of vertices for the random graph
+        int maxWeight = 1000; // Maximum edge weight for the random graph
+        int numQueries = 10000; // Number of queries to submit
+
+        Graph graph = Graph.fromEdges(generateRandomConnectedGraph(numVertices, maxWeight));
+        try (QueryServer server = new QueryServer(graph, SOLVERS.get(BidirectionalDijkstraSolver.NAME),
+                SolverOptions.defaults())) {
+            List<CompletableFuture<PointToPointResult>> pending = new ArrayList<>();
+            long startTime = System.currentTimeMillis();
+            for (int i = 0; i < numQueries; i++) {
+                CompletableFuture<PointToPointResult> future = server.submitQuery(random.nextInt(numVertices),
+                        random.nextInt(numVertices));
+                while (future.isCompletedExceptionally()) {
+                    // Saturated: wait for the oldest query, then retry
+                    pending.remove(0).join();
+                    future = server.submitQuery(random.nextInt(numVertices), random.nextInt(numVertices));
+                }
+                pending.add(future);
+            }
+            CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+            long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+
+            System.out.println("Throughput: " + (numQueries * 1000L / elapsed) + " queries/second | Rejected: "
+                    + server.getRejectedCount());
+            System.out.println("Latency p50: " + server.getLatencyPercentile(50) / 1000 + " us | p99: "
+                    + server.getLatencyPercentile(99) / 1000 + " us | p99.9: "
+                    + server.getLatencyPercentile(99.9) / 1000 + " us");
+        }
+    }
+
+    /**
+     * Times the solvers on large sparse graphs of each generated topology.
+     */
+    public static void scaleTest() {
+        long seed = 42; // Seed for the generators, so runs are repeatable
+        int maxWeight = 1000; // Maximum edge weight
+
+        Map<String, Graph> graphs = new LinkedHashMap<>();
+        long startTime = System.currentTimeMillis();
+        graphs.put("R-MAT 2^20", GraphGenerator.rmat(20, 16, maxWeight, seed));
+        graphs.put("Grid 1000x1000", GraphGenerator.grid(1000, 1000, maxWeight, seed));
+        graphs.put("Erdos-Renyi 1M", GraphGenerator.erdosRenyi(1 << 20, 8, maxWeight, seed));
+        System.out.println("Generated in " + (System.currentTimeMillis() - startTime) + " milliseconds");
+
+        SolverOptions options = SolverOptions.defaults().withParallel(RUN_IN_PARALLEL);
+        for (Map.Entry<String, Graph> entry : graphs.entrySet()) {
+            Graph graph = entry.getValue();
+            System.out.println(entry.getKey() + ": " + graph.getNumVertices() + " vertices, " + graph.getNumEdges()
+                    + " edges");
+            for (String name : new String[]{DeltaSteppingSolver.NAME, RadiusSteppingSolver.NAME, DijkstraSolver.NAME}) {
+                System.out.println(name + ":");
+                runSolver(SOLVERS.get(name), graph, 0, options, false);
+            }
+        }
+    }
+
+    /**
+     * Times the Delta Stepping solver on a large R-MAT graph as generated
+     * and renumbered by each vertex ordering.
+     */
+    public static void reorderTest() {
+        Graph graph = GraphGenerator.rmat(20, 16, 1000, 42);
+        SolverOptions options = SolverOptions.defaults().withParallel(RUN_IN_PARALLEL);
+        ShortestPathSolver solver = SOLVERS.get(DeltaSteppingSolver.NAME);
+
+        Map<String, Function<CsrGraph, VertexOrdering>> orderings = new LinkedHashMap<>();
+        orderings.put("Breadth-first", VertexOrdering::breadthFirst);
+        orderings.put("Reverse Cuthill-McKee", VertexOrdering::reverseCuthillMcKee);
+        orderings.put("Degree", VertexOrdering::byDegree);
+
+        System.out.println("Input order (mean edge span " + VertexOrdering.meanEdgeSpan(graph) + "):");
+        runSolver(solver, graph, 0, options, false);
+        for (Map.Entry<String, Function<CsrGraph, VertexOrdering>> entry : orderings.entrySet()) {
+            ReorderingSolver reordering = new ReorderingSolver(solver, entry.getValue());
+            long startTime = System.currentTimeMillis();
+            VertexOrdering ordering = reordering.orderingOf(graph);
+            System.out.println(entry.getKey() + " (reordered in " + (System.currentTimeMillis() - startTime)
+                    + " milliseconds, mean edge span " + VertexOrdering.meanEdgeSpan(ordering.apply(graph)) + "):");
+            runSolver(reordering, graph, 0, options, false);
+        }
+    }
+
+    /**
+     * Compares point-to-point queries by ALT, bidirectional Dijkstra and
+     * Dijkstra on a large grid, after timing the landmark preprocessing.
+     */
+    public static void altTest() {
+        Random random = new Random(42);
+        int numQueries = 100; // Number of random source-target pairs
+        Graph graph = GraphGenerator.grid(1000, 1000, 1000, 42);
+
+        long startTime = System.currentTimeMillis();
+        ((AltSolver) SOLVERS.get(AltSolver.NAME)).landmarksOf(graph);
+        System.out.println("Landmarks computed in " + (System.currentTimeMillis() - startTime) + " milliseconds");
+
+        int[][] queries = new int[numQueries][];
+        for (int i = 0; i < numQueries; i++) {
+            queries[i] = new int[]{random.nextInt(graph.getNumVertices()), random.nextInt(graph.getNumVertices())};
+        }
+        SolverOptions options = SolverOptions.defaults().withParallel(RUN_IN_PARALLEL);
+        for (String name : new String[]{AltSolver.NAME, BidirectionalDijkstraSolver.NAME, DijkstraSolver.NAME}) {
+            long settled = 0;
+            startTime = System.currentTimeMillis();
+            for (int[] query : queries) {
+                settled += SOLVERS.get(name).query(graph, query[0], query[1], options).getSettledVertices();
+            }
+            System.out.println(name + ": " + (System.currentTimeMillis() - startTime) / numQueries
+                    + " milliseconds and " + settled / numQueries + " settled vertices per query");
+        }
+    }
+
+    /**
+     * Times the Contraction Hierarchy preprocessing on a grid and compares
+     * its point-to-point and PHAST queries with bidirectional Dijkstra and
+     * Delta Stepping, then checks PHAST on a graph with zero-weight edges.
+     */
+    public static void chTest() {
+        Random random = new Random(42);
+        int numQueries = 100; // Number of random source-target pairs
+        Graph graph = GraphGenerator.grid(200, 200, 1000, 42);
+
+        long startTime = System.currentTimeMillis();
+        ContractionHierarchy hierarchy = ContractionHierarchy.build(graph, RUN_IN_PARALLEL);
+        System.out.println(hierarchy + " built in " + (System.currentTimeMillis() - startTime) + " milliseconds");
+
+        int[][] queries = new int[numQueries][];
+        for (int i = 0; i < numQueries; i++) {
+            queries[i] = new int[]{random.nextInt(graph.getNumVertices()), random.nextInt(graph.getNumVertices())};
+        }
+        SolverOptions options = SolverOptions.defaults().withParallel(RUN_IN_PARALLEL);
+        long settled = 0;
+        startTime = System.nanoTime();
+        for (int[] query : queries) {
+            settled += hierarchy.query(query[0], query[1]).getSettledVertices();
+        }
+        System.out.println(ContractionHierarchySolver.NAME + ": " + (System.nanoTime() - startTime) / 1000 / numQueries
+                + " microseconds and " + settled / numQueries + " settled vertices per query");
+        settled = 0;
+        startTime = System.nanoTime();
+        for (int[] query : queries) {
+            settled += SOLVERS.get(BidirectionalDijkstraSolver.NAME).query(graph, query[0], query[1], options)
+                    .getSettledVertices();
+        }
+        System.out.println(BidirectionalDijkstraSolver.NAME + ": " + (System.nanoTime() - startTime) / 1000 / numQueries
+                + " microseconds and " + settled / numQueries + " settled vertices per query");
+
+        startTime = System.currentTimeMillis();
+        hierarchy.solve(0);
+        System.out.println("PHAST single-source: " + (System.currentTimeMillis() - startTime) + " milliseconds");
+        startTime = System.currentTimeMillis();
+        SOLVERS.get(DeltaSteppingSolver.NAME).solve(graph, 0, options);
+        System.out.println(DeltaSteppingSolver.NAME + " single-source: " + (System.currentTimeMillis() - startTime)
+                + " milliseconds");
+
+        // Zero-weight edges put many vertices at equal distances
+        int numVertices = 2000;
+        int[] sources = new int[3 * numVertices];
+        int[] destinations = new int[sources.length];
+        int[] weights = new int[sources.length];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = random.nextInt(numVertices);
+            destinations[i] = random.nextInt(numVertices);
+            weights[i] = random.nextInt(3) == 0 ? 1 + random.nextInt(5) : 0;
+        }
+        Graph zeroWeights = new Graph(numVertices, sources, destinations, weights);
+        ShortestPathResult phast = ContractionHierarchy.build(zeroWeights, RUN_IN_PARALLEL).solve(0);
+        ShortestPathResult reference = SOLVERS.get(DijkstraSolver.NAME).solve(zeroWeights, 0, options);
+        for (int v = 0; v < numVertices; v++) {
+            if (phast.getDistances()[v] != Integer.MAX_VALUE) {
+                phast.getPath(v);
+            }
+        }
+        System.out.println("Zero-weight edges: PHAST matches Dijkstra: "
+                + Arrays.equals(phast.getDistances(), reference.getDistances()));
+    }
+
     public static void singleTests() {
         // Test Case 1: User-provided test case
         int[][] edges1 = {
@@ -130,30 +381,73 @@ public class ShortestPathCompare {
         System.out.println("Running test case with user-provided edges:");
         System.out.println("============================================");
 
+        Graph graph = Graph.fromEdges(edges);
+        SolverOptions options = SolverOptions.defaults().withDelta(delta).withRadius(radius).withParallel(runInParallel);
+
         System.out.println("Delta Stepping Algorithm:");
-        DeltaSteppingMain.runDeltaStepping(edges, source, delta, OUTPUT_SHORTEST_PATH, runInParallel);
+        runSolver(SOLVERS.get(DeltaSteppingSolver.NAME), graph, source, options, OUTPUT_SHORTEST_PATH);
 
         System.out.println("Radius Stepping Algorithm:");
-        RadiusSteppingMain.runRadiusStepping(edges, source, radius, OUTPUT_SHORTEST_PATH, runInParallel);
+        runSolver(SOLVERS.get(RadiusSteppingSolver.NAME), graph, source, options, OUTPUT_SHORTEST_PATH);
     }
 
     public static void compareRandomAlgorithms(int[][] randomGraph, int source, int delta, int radius, boolean runInParallel) {
         System.out.println("Running random test case with " + randomGraph.length + " edges:");
         System.out.println("============================================");
 
+        Graph graph = Graph.fromEdges(randomGraph);
+        SolverOptions options = SolverOptions.defaults().withDelta(delta).withRadius(radius).withParallel(runInParallel);
+
         long deltaSteppingRunningTotal = TIMING_MAP.getOrDefault("DELTA", 0l);
         long radiusSteppingRunningTotal = TIMING_MAP.getOrDefault("RADIUS", 0l);
 
         System.out.println("Delta Stepping Algorithm:");
-        deltaSteppingRunningTotal += DeltaSteppingMain.runDeltaStepping(randomGraph, source, delta, OUTPUT_SHORTEST_PATH, runInParallel);
+        deltaSteppingRunningTotal += runSolver(SOLVERS.get(DeltaSteppingSolver.NAME), graph, source, options, OUTPUT_SHORTEST_PATH);
 
         System.out.println("Radius Stepping Algorithm:");
-        radiusSteppingRunningTotal += RadiusSteppingMain.runRadiusStepping(randomGraph, source, radius, OUTPUT_SHORTEST_PATH, runInParallel);
+        radiusSteppingRunningTotal += runSolver(SOLVERS.get(RadiusSteppingSolver.NAME), graph, source, options, OUTPUT_SHORTEST_PATH);
 
         TIMING_MAP.put("DELTA", deltaSteppingRunningTotal);
         TIMING_MAP.put("RADIUS", radiusSteppingRunningTotal);
     }
 
+    /**
+     * Runs one query, printing its execution time and the sum of all
+     * distances.
+     *
+     * @return The execution time in milliseconds.
+     */
+    public static long runSolver(ShortestPathSolver solver, CsrGraph graph, int source, SolverOptions options, boolean outputShortestPath) {
+        long startTime = System.currentTimeMillis(); // Record start time
+        ShortestPathResult result = solver.solve(graph, source, options);
+        long endTime = System.currentTimeMillis(); // Record end time
+
+        int[] shortestDistances = result.getDistances();
+
+        if (outputShortestPath) {
+            // Print the shortest distances and execution time
+            System.out.println("Shortest distances from node " + source + ":");
+            for (int i = 0; i < shortestDistances.length; i++) {
+                System.out.println("Node " + i + ": " + shortestDistances[i]);
+            }
+        }
+
+        long executionTime = endTime - startTime;
+        long totaDistance = 0;
+        for (int distance : shortestDistances) {
+            totaDistance += distance;
+        }
+        System.out.println("Execution time: " + executionTime + " milliseconds | Total Distance: " + totaDistance + "\n");
+
+        return executionTime;
+    }
+
+    /**
+     * Builds a complete graph with random weights as a shuffled edge list.
+     * The list holds {@code V * (V - 1)} edges, so this only suits graphs of
+     * a few thousand vertices; {@link GraphGenerator} builds sparse graphs
+     * with millions.
+     */
     public static int[][] generateRandomConnectedGraph(int numVertices, int maxWeight) {
         Random random = new Random();
         List<int[]> edgesList = new ArrayList<>();
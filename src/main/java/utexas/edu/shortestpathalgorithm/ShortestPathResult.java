@@ -0,0 +1,190 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package utexas.edu.shortestpathalgorithm;
+
+import java.util.function.IntUnaryOperator;
+
+/**
+ * The outcome of a single-source shortest path query: the distance to every
+ * vertex and the shortest path tree, from which the route to any target can
+ * be read without searching again. The arrays are held either on the heap or
+ * in direct memory; see {@link SolverOptions#withOffHeapDistances(boolean)}.
+ */
+public class ShortestPathResult {
+
+    private final String solverName;
+    private final int source;
+    private final int[] distances;
+    private final int[] predecessors;
+
+    // Set instead of the arrays when the result is stored off-heap
+    private final OffHeapRegion offHeapDistances;
+    private final OffHeapRegion offHeapPredecessors;
+
+    /**
+     * Initializes a result.
+     *
+     * @param solverName The name of the solver that produced it.
+     * @param source The source node.
+     * @param distances The shortest distance to every vertex,
+     * {@link Integer#MAX_VALUE} where unreachable.
+     * @param predecessors The predecessor of every vertex on its shortest
+     * path, -1 for the source and unreachable vertices.
+     */
+    public ShortestPathResult(String solverName, int source, int[] distances, int[] predecessors) {
+        this.solverName = solverName;
+        this.source = source;
+        this.distances = distances;
+        this.predecessors = predecessors;
+        this.offHeapDistances = null;
+        this.offHeapPredecessors = null;
+    }
+
+    private ShortestPathResult(String solverName, int source, OffHeapRegion distances, OffHeapRegion predecessors) {
+        this.solverName = solverName;
+        this.source = source;
+        this.distances = null;
+        this.predecessors = null;
+        this.offHeapDistances = distances;
+        this.offHeapPredecessors = predecessors;
+    }
+
+    /**
+     * Copies the output of an engine, whose arrays it will overwrite on its
+     * next query, into a result.
+     *
+     * @param solverName The name of the solver that produced it.
+     * @param source The source node.
+     * @param distances The shortest distance to every vertex.
+     * @param predecessors The predecessor of every vertex.
+     * @param offHeap Whether to store the copy in direct memory.
+     * @return The result.
+     */
+    static ShortestPathResult copyOf(String solverName, int source, int[] distances, int[] predecessors, boolean offHeap) {
+        if (!offHeap) {
+            return new ShortestPathResult(solverName, source, distances.clone(), predecessors.clone());
+        }
+        OffHeapRegion dist = OffHeapRegion.allocate(4L * distances.length);
+        OffHeapRegion pred = OffHeapRegion.allocate(4L * predecessors.length);
+        dist.putInts(0, distances, 0, distances.length);
+        pred.putInts(0, predecessors, 0, predecessors.length);
+        return new ShortestPathResult(solverName, source, dist, pred);
+    }
+
+    /**
+     * Gets the name of the solver that produced this result.
+     *
+     * @return The solver name.
+     */
+    public String getSolverName() {
+        return solverName;
+    }
+
+    /**
+     * Gets the source node of the query.
+     *
+     * @return The source node.
+     */
+    public int getSource() {
+        return source;
+    }
+
+    /**
+     * Gets the shortest distance to a vertex.
+     *
+     * @param v The vertex.
+     * @return The distance, or {@link Integer#MAX_VALUE} if unreachable.
+     */
+    public int getDistance(int v) {
+        return distances != null ? distances[v] : offHeapDistances.getInt(v);
+    }
+
+    /**
+     * Gets the shortest distances to all vertices. An off-heap result is
+     * copied onto the heap by every call.
+     *
+     * @return An array of shortest distances.
+     */
+    public int[] getDistances() {
+        return distances != null ? distances : toArray(offHeapDistances);
+    }
+
+    /**
+     * Gets the predecessor of a vertex on its shortest path.
+     *
+     * @param v The vertex.
+     * @return The predecessor, or -1 for the source and unreachable vertices.
+     */
+    public int getPredecessor(int v) {
+        return predecessors != null ? predecessors[v] : offHeapPredecessors.getInt(v);
+    }
+
+    /**
+     * Gets the predecessors of all vertices. An off-heap result is copied
+     * onto the heap by every call.
+     *
+     * @return An array of predecessors.
+     */
+    public int[] getPredecessors() {
+        return predecessors != null ? predecessors : toArray(offHeapPredecessors);
+    }
+
+    /**
+     * Returns whether the distances and predecessors are stored off-heap.
+     *
+     * @return {@code true} if the result lives in direct memory.
+     */
+    public boolean isOffHeap() {
+        return distances == null;
+    }
+
+    private static int[] toArray(OffHeapRegion region) {
+        int[] values = new int[(int) (region.size() >>> 2)];
+        region.getInts(0, values, 0, values.length);
+        return values;
+    }
+
+    /**
+     * Gets the vertices on a shortest path from the source to a target.
+     *
+     * @param target The target vertex.
+     * @return The path, starting with the source and ending with
+     * {@code target}, or an empty array if {@code target} is unreachable.
+     */
+    public int[] getPath(int target) {
+        boolean reachable = getDistance(target) != Integer.MAX_VALUE;
+        if (predecessors != null) {
+            return tracePath(predecessors, source, target, reachable);
+        }
+        int numVertices = (int) (offHeapPredecessors.size() >>> 2);
+        return tracePath(v -> offHeapPredecessors.getInt(v), numVertices, source, target, reachable);
+    }
+
+    /**
+     * Walks a predecessor array back from {@code target} to {@code source}.
+     */
+    static int[] tracePath(int[] predecessors, int source, int target, boolean reachable) {
+        return tracePath(v -> predecessors[v], predecessors.length, source, target, reachable);
+    }
+
+    private static int[] tracePath(IntUnaryOperator predecessor, int numVertices, int source, int target, boolean reachable) {
+        if (!reachable) {
+            return new int[0];
+        }
+        int length = 1;
+        for (int v = target; v != source; v = predecessor.applyAsInt(v)) {
+            if (predecessor.applyAsInt(v) < 0 || length > numVertices) {
+                throw new IllegalStateException("No predecessor chain from " + target + " to " + source);
+            }
+            length++;
+        }
+        int[] path = new int[length];
+        for (int v = target, i = length - 1; i >= 0; v = predecessor.applyAsInt(v), i--) {
+            path[i] = v;
+        }
+        return path;
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package utexas.edu.shortestpathalgorithm;
+
+/**
+ * A single-source shortest path engine. Implementations are stateless with
+ * respect to queries, so one instance can serve any number of sources on
+ * any number of graphs.
+ */
+public interface ShortestPathSolver {
+
+    /**
+     * Returns the name the solver is registered under.
+     *
+     * @return The solver name.
+     */
+    String getName();
+
+    /**
+     * Computes the shortest distances from a source to every vertex.
+     *
+     * @param graph The graph to search.
+     * @param source The source node.
+     * @param options The tuning options for this query.
+     * @return The distances from {@code source}.
+     */
+    ShortestPathResult solve(CsrGraph graph, int source, SolverOptions options);
+
+    /**
+     * Computes a shortest path from a source to a single target. The default
+     * implementation runs a full {@link #solve} and reads the target off it;
+     * engines that can stop once the target is settled override it.
+     *
+     * @param graph The graph to search.
+     * @param source The source node.
+     * @param target The target node.
+     * @param options The tuning options for this query.
+     * @return The distance and path from {@code source} to {@code target}.
+     */
+    default PointToPointResult query(CsrGraph graph, int source, int target, SolverOptions options) {
+        ShortestPathResult result = solve(graph, source, options);
+        int reached = 0;
+        for (int distance : result.getDistances()) {
+            if (distance != Integer.MAX_VALUE) {
+                reached++;
+            }
+        }
+        return new PointToPointResult(getName(), source, target, result.getDistance(target), result.getPath(target), reached);
+    }
+}
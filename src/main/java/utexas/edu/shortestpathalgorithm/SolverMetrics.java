@@ -0,0 +1,466 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package utexas.edu.shortestpathalgorithm;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counts what the stepping engines do: edges relaxed, relaxations that
+ * lowered a distance, steps, frontier sizes, time per phase and how busy the
+ * worker threads were. Counters are striped {@link LongAdder}s, and leaf
+ * tasks add their totals once when they finish, so workers do not contend.
+ *
+ * <p>Metrics are collected only for queries whose {@link SolverOptions}
+ * carry a metrics object; without one the engines skip every clock read and
+ * counter update. One object may collect many queries, run concurrently or
+ * not; take a {@link #snapshot()} before and after a query and subtract them
+ * for the counts of that query alone.
+ */
+public final class SolverMetrics implements SolverMetricsMXBean {
+
+    /**
+     * The phases a step is timed in.
+     */
+    public enum Phase {
+        /**
+         * Choosing the vertices of a step from the buckets or candidates.
+         */
+        SELECT,
+        /**
+         * Light relaxations, or the relaxation passes of a round.
+         */
+        RELAX,
+        /**
+         * Heavy relaxations.
+         */
+        HEAVY
+    }
+
+    /**
+     * The number of frontier size classes; the last class also holds every
+     * larger frontier.
+     */
+    static final int HISTOGRAM_SIZE = 32;
+
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder runNanos = new LongAdder();
+    private final LongAdder steps = new LongAdder();
+    private final LongAdder emptySteps = new LongAdder();
+    private final LongAdder passes = new LongAdder();
+    private final LongAdder edgesRelaxed = new LongAdder();
+    private final LongAdder successfulRelaxations = new LongAdder();
+    private final LongAdder settledVertices = new LongAdder();
+    private final LongAdder busyNanos = new LongAdder();
+    private final LongAdder capacityNanos = new LongAdder();
+    private final LongAdder[] frontierHistogram = new LongAdder[HISTOGRAM_SIZE];
+    private final LongAdder[] phaseNanos = new LongAdder[Phase.values().length];
+
+    private volatile ObjectName registeredName;
+
+    /**
+     * Initializes metrics with every counter at zero.
+     */
+    public SolverMetrics() {
+        for (int i = 0; i < frontierHistogram.length; i++) {
+            frontierHistogram[i] = new LongAdder();
+        }
+        for (int i = 0; i < phaseNanos.length; i++) {
+            phaseNanos[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records a completed run.
+     *
+     * @param settled The vertices the run settled, including its source.
+     * @param nanos The time the run took.
+     */
+    void recordRun(long settled, long nanos) {
+        runs.increment();
+        settledVertices.add(settled);
+        runNanos.add(nanos);
+    }
+
+    /**
+     * Records a processed bucket or round.
+     *
+     * @param empty Whether it held no vertex to relax.
+     */
+    void recordStep(boolean empty) {
+        steps.increment();
+        if (empty) {
+            emptySteps.increment();
+        }
+    }
+
+    /**
+     * Records the time of a phase that started at {@code start}.
+     *
+     * @param phase The phase.
+     * @param start The {@link System#nanoTime()} the phase started at.
+     * @return The current {@link System#nanoTime()}, at which the next phase
+     * starts.
+     */
+    long recordPhase(Phase phase, long start) {
+        long now = System.nanoTime();
+        phaseNanos[phase.ordinal()].add(now - start);
+        return now;
+    }
+
+    /**
+     * Records a frontier about to be relaxed by the given number of threads
+     * in the given time.
+     *
+     * @param size The number of vertices in the frontier.
+     * @param threads The threads available to relax it.
+     * @param nanos The time the relaxation took.
+     */
+    void recordFrontier(int size, int threads, long nanos) {
+        passes.increment();
+        frontierHistogram[Math.min(HISTOGRAM_SIZE - 1, Integer.SIZE - Integer.numberOfLeadingZeros(size))].increment();
+        capacityNanos.add(threads * nanos);
+    }
+
+    /**
+     * Records the work of one leaf task or serial relaxation.
+     *
+     * @param edges The edges it relaxed.
+     * @param improved The relaxations that lowered a distance.
+     * @param nanos The time it took.
+     */
+    void recordLeaf(long edges, long improved, long nanos) {
+        edgesRelaxed.add(edges);
+        successfulRelaxations.add(improved);
+        busyNanos.add(nanos);
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server.
+     *
+     * @param name The value of the {@code name} key of the object name,
+     * which distinguishes several metrics objects.
+     * @return The object name the metrics were registered under.
+     * @throws JMException If the name is malformed or already taken.
+     */
+    public synchronized ObjectName register(String name) throws JMException {
+        ObjectName objectName = new ObjectName(getClass().getPackageName() + ":type=SolverMetrics,name="
+                + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        registeredName = objectName;
+        return objectName;
+    }
+
+    /**
+     * Removes these metrics from the platform MBean server, if they were
+     * registered.
+     *
+     * @throws JMException If the server no longer knows the metrics.
+     */
+    public synchronized void unregister() throws JMException {
+        if (registeredName != null) {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+            registeredName = null;
+        }
+    }
+
+    /**
+     * Reads every counter. Counters updated concurrently with this call may
+     * or may not be included.
+     *
+     * @return The current totals.
+     */
+    public Snapshot snapshot() {
+        long[] phases = new long[phaseNanos.length];
+        for (int i = 0; i < phases.length; i++) {
+            phases[i] = phaseNanos[i].sum();
+        }
+        return new Snapshot(runs.sum(), runNanos.sum(), steps.sum(), emptySteps.sum(), passes.sum(),
+                edgesRelaxed.sum(), successfulRelaxations.sum(), settledVertices.sum(), busyNanos.sum(),
+                capacityNanos.sum(), getFrontierHistogram(), phases);
+    }
+
+    @Override
+    public void reset() {
+        for (LongAdder adder : new LongAdder[]{runs, runNanos, steps, emptySteps, passes, edgesRelaxed,
+            successfulRelaxations, settledVertices, busyNanos, capacityNanos}) {
+            adder.reset();
+        }
+        for (LongAdder adder : frontierHistogram) {
+            adder.reset();
+        }
+        for (LongAdder adder : phaseNanos) {
+            adder.reset();
+        }
+    }
+
+    @Override
+    public long getRuns() {
+        return runs.sum();
+    }
+
+    @Override
+    public long getRunNanos() {
+        return runNanos.sum();
+    }
+
+    @Override
+    public long getSteps() {
+        return steps.sum();
+    }
+
+    @Override
+    public long getEmptySteps() {
+        return emptySteps.sum();
+    }
+
+    @Override
+    public long getPasses() {
+        return passes.sum();
+    }
+
+    @Override
+    public long getEdgesRelaxed() {
+        return edgesRelaxed.sum();
+    }
+
+    @Override
+    public long getSuccessfulRelaxations() {
+        return successfulRelaxations.sum();
+    }
+
+    @Override
+    public long getWastedRelaxations() {
+        return snapshot().getWastedRelaxations();
+    }
+
+    @Override
+    public long getSettledVertices() {
+        return settledVertices.sum();
+    }
+
+    @Override
+    public long[] getFrontierHistogram() {
+        long[] histogram = new long[frontierHistogram.length];
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] = frontierHistogram[i].sum();
+        }
+        return histogram;
+    }
+
+    @Override
+    public long getSelectNanos() {
+        return phaseNanos[Phase.SELECT.ordinal()].sum();
+    }
+
+    @Override
+    public long getRelaxNanos() {
+        return phaseNanos[Phase.RELAX.ordinal()].sum();
+    }
+
+    @Override
+    public long getHeavyNanos() {
+        return phaseNanos[Phase.HEAVY.ordinal()].sum();
+    }
+
+    @Override
+    public double getThreadUtilisation() {
+        return snapshot().getThreadUtilisation();
+    }
+
+    /**
+     * The counters of a {@link SolverMetrics} at one point in time.
+     */
+    public static final class Snapshot {
+
+        private final long runs;
+        private final long runNanos;
+        private final long steps;
+        private final long emptySteps;
+        private final long passes;
+        private final long edgesRelaxed;
+        private final long successfulRelaxations;
+        private final long settledVertices;
+        private final long busyNanos;
+        private final long capacityNanos;
+        private final long[] frontierHistogram;
+        private final long[] phaseNanos;
+
+        private Snapshot(long runs, long runNanos, long steps, long emptySteps, long passes, long edgesRelaxed,
+                long successfulRelaxations, long settledVertices, long busyNanos, long capacityNanos,
+                long[] frontierHistogram, long[] phaseNanos) {
+            this.runs = runs;
+            this.runNanos = runNanos;
+            this.steps = steps;
+            this.emptySteps = emptySteps;
+            this.passes = passes;
+            this.edgesRelaxed = edgesRelaxed;
+            this.successfulRelaxations = successfulRelaxations;
+            this.settledVertices = settledVertices;
+            this.busyNanos = busyNanos;
+            this.capacityNanos = capacityNanos;
+            this.frontierHistogram = frontierHistogram;
+            this.phaseNanos = phaseNanos;
+        }
+
+        /**
+         * Returns the counts accumulated between an earlier snapshot and
+         * this one.
+         *
+         * @param earlier A snapshot of the same metrics taken before this one.
+         * @return The difference.
+         */
+        public Snapshot minus(Snapshot earlier) {
+            long[] histogram = new long[frontierHistogram.length];
+            for (int i = 0; i < histogram.length; i++) {
+                histogram[i] = frontierHistogram[i] - earlier.frontierHistogram[i];
+            }
+            long[] phases = new long[phaseNanos.length];
+            for (int i = 0; i < phases.length; i++) {
+                phases[i] = phaseNanos[i] - earlier.phaseNanos[i];
+            }
+            return new Snapshot(runs - earlier.runs, runNanos - earlier.runNanos, steps - earlier.steps,
+                    emptySteps - earlier.emptySteps, passes - earlier.passes, edgesRelaxed - earlier.edgesRelaxed,
+                    successfulRelaxations - earlier.successfulRelaxations,
+                    settledVertices - earlier.settledVertices, busyNanos - earlier.busyNanos,
+                    capacityNanos - earlier.capacityNanos, histogram, phases);
+        }
+
+        /**
+         * Gets the number of completed runs.
+         *
+         * @return The run count.
+         */
+        public long getRuns() {
+            return runs;
+        }
+
+        /**
+         * Gets the total time spent in runs.
+         *
+         * @return The run time in nanoseconds.
+         */
+        public long getRunNanos() {
+            return runNanos;
+        }
+
+        /**
+         * Gets the number of buckets or rounds processed.
+         *
+         * @return The step count.
+         */
+        public long getSteps() {
+            return steps;
+        }
+
+        /**
+         * Gets the number of buckets visited without work.
+         *
+         * @return The empty step count.
+         */
+        public long getEmptySteps() {
+            return emptySteps;
+        }
+
+        /**
+         * Gets the number of frontiers relaxed.
+         *
+         * @return The pass count.
+         */
+        public long getPasses() {
+            return passes;
+        }
+
+        /**
+         * Gets the number of edges whose relaxation was attempted.
+         *
+         * @return The edge count.
+         */
+        public long getEdgesRelaxed() {
+            return edgesRelaxed;
+        }
+
+        /**
+         * Gets the number of relaxations that lowered a distance.
+         *
+         * @return The successful relaxation count.
+         */
+        public long getSuccessfulRelaxations() {
+            return successfulRelaxations;
+        }
+
+        /**
+         * Gets the number of successful relaxations that did not give a
+         * settled vertex its final distance. Every settled vertex but the
+         * source of each run needs exactly one.
+         *
+         * @return The wasted relaxation count.
+         */
+        public long getWastedRelaxations() {
+            return Math.max(0, successfulRelaxations - (settledVertices - runs));
+        }
+
+        /**
+         * Gets the number of vertices whose distances became final.
+         *
+         * @return The settled vertex count.
+         */
+        public long getSettledVertices() {
+            return settledVertices;
+        }
+
+        /**
+         * Gets the frontier sizes in power-of-two classes: entry {@code i}
+         * counts the frontiers with {@code 2^(i-1) <= size < 2^i}.
+         *
+         * @return The frontier size histogram.
+         */
+        public long[] getFrontierHistogram() {
+            return frontierHistogram.clone();
+        }
+
+        /**
+         * Gets the time spent in a phase.
+         *
+         * @param phase The phase.
+         * @return The time in nanoseconds.
+         */
+        public long getPhaseNanos(Phase phase) {
+            return phaseNanos[phase.ordinal()];
+        }
+
+        /**
+         * Gets the fraction of the thread time available during relaxations
+         * that was spent relaxing edges. Low values with small frontiers
+         * mean the pool spends its time scheduling rather than relaxing.
+         *
+         * @return The thread utilisation between 0 and 1, or 0 before the
+         * first relaxation.
+         */
+        public double getThreadUtilisation() {
+            return capacityNanos == 0 ? 0 : Math.min(1, (double) busyNanos / capacityNanos);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder histogram = new StringBuilder();
+            for (int i = 0; i < frontierHistogram.length; i++) {
+                if (frontierHistogram[i] != 0) {
+                    histogram.append(histogram.length() == 0 ? "" : " ")
+                            .append(i == 0 ? 0 : 1L << (i - 1)).append(':').append(frontierHistogram[i]);
+                }
+            }
+            return String.format("runs=%d time=%dus steps=%d (empty %d) passes=%d edges=%d improved=%d wasted=%d"
+                    + " settled=%d select=%dus relax=%dus heavy=%dus utilisation=%.2f frontiers=[%s]",
+                    runs, runNanos / 1000, steps, emptySteps, passes, edgesRelaxed, successfulRelaxations,
+                    getWastedRelaxations(), settledVertices, getPhaseNanos(Phase.SELECT) / 1000,
+                    getPhaseNanos(Phase.RELAX) / 1000, getPhaseNanos(Phase.HEAVY) / 1000, getThreadUtilisation(),
+                    histogram);
+        }
+    }
+}
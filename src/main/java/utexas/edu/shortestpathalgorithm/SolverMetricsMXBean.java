@@ -0,0 +1,124 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package utexas.edu.shortestpathalgorithm;
+
+/**
+ * The management interface through which {@link SolverMetrics} are exported
+ * over JMX. Every attribute is a running total since the metrics were
+ * created or last reset.
+ */
+public interface SolverMetricsMXBean {
+
+    /**
+     * Gets the number of completed runs.
+     *
+     * @return The run count.
+     */
+    long getRuns();
+
+    /**
+     * Gets the total time spent in runs.
+     *
+     * @return The run time in nanoseconds.
+     */
+    long getRunNanos();
+
+    /**
+     * Gets the number of buckets (Delta Stepping) or rounds (Radius
+     * Stepping) processed.
+     *
+     * @return The step count.
+     */
+    long getSteps();
+
+    /**
+     * Gets the number of buckets that were visited but held no vertex whose
+     * distance fell in them.
+     *
+     * @return The empty step count.
+     */
+    long getEmptySteps();
+
+    /**
+     * Gets the number of frontiers relaxed.
+     *
+     * @return The pass count.
+     */
+    long getPasses();
+
+    /**
+     * Gets the number of edges whose relaxation was attempted.
+     *
+     * @return The edge count.
+     */
+    long getEdgesRelaxed();
+
+    /**
+     * Gets the number of relaxations that lowered a distance.
+     *
+     * @return The successful relaxation count.
+     */
+    long getSuccessfulRelaxations();
+
+    /**
+     * Gets the number of successful relaxations that were later superseded,
+     * that is, that did not give a settled vertex its final distance.
+     *
+     * @return The wasted relaxation count.
+     */
+    long getWastedRelaxations();
+
+    /**
+     * Gets the number of vertices whose distances became final.
+     *
+     * @return The settled vertex count.
+     */
+    long getSettledVertices();
+
+    /**
+     * Gets the frontier sizes in power-of-two classes: entry {@code i}
+     * counts the frontiers with {@code 2^(i-1) <= size < 2^i}.
+     *
+     * @return The frontier size histogram.
+     */
+    long[] getFrontierHistogram();
+
+    /**
+     * Gets the time spent choosing the vertices of each step.
+     *
+     * @return The selection time in nanoseconds.
+     */
+    long getSelectNanos();
+
+    /**
+     * Gets the time spent in light relaxations (Delta Stepping) or in the
+     * relaxation passes of a round (Radius Stepping).
+     *
+     * @return The relaxation time in nanoseconds.
+     */
+    long getRelaxNanos();
+
+    /**
+     * Gets the time spent relaxing heavy edges.
+     *
+     * @return The heavy relaxation time in nanoseconds.
+     */
+    long getHeavyNanos();
+
+    /**
+     * Gets the fraction of the thread time available during relaxations that
+     * was spent relaxing edges.
+     *
+     * @return The thread utilisation between 0 and 1, or 0 before the first
+     * relaxation.
+     */
+    double getThreadUtilisation();
+
+    /**
+     * Sets every counter back to zero.
+     */
+    void reset();
+}
@@ -0,0 +1,174 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package utexas.edu.shortestpathalgorithm;
+
+/**
+ * Immutable tuning options passed to a {@link ShortestPathSolver}. Solvers
+ * ignore options that do not apply to them.
+ */
+public final class SolverOptions {
+
+    /**
+     * Marks a delta or radius that the solver should derive from the graph
+     * and adapt while it runs.
+     */
+    public static final int AUTO = 0;
+
+    private static final SolverOptions DEFAULTS = new SolverOptions(AUTO, AUTO, false, true, false, null);
+
+    private final int delta;
+    private final int radius;
+    private final boolean radiusShortcuts;
+    private final boolean runInParallel;
+    private final boolean offHeapDistances;
+    private final SolverMetrics metrics;
+
+    private SolverOptions(int delta, int radius, boolean radiusShortcuts, boolean runInParallel,
+            boolean offHeapDistances, SolverMetrics metrics) {
+        this.delta = delta;
+        this.radius = radius;
+        this.radiusShortcuts = radiusShortcuts;
+        this.runInParallel = runInParallel;
+        this.offHeapDistances = offHeapDistances;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns options that derive and adapt delta and radius, add no radius
+     * shortcuts, run in parallel, return distances on the heap and collect
+     * no metrics.
+     *
+     * @return The default options.
+     */
+    public static SolverOptions defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * Returns a copy of these options with the given Delta Stepping bucket
+     * width.
+     *
+     * @param delta The delta value, or {@link #AUTO}.
+     * @return The new options.
+     */
+    public SolverOptions withDelta(int delta) {
+        return new SolverOptions(delta, radius, radiusShortcuts, runInParallel, offHeapDistances, metrics);
+    }
+
+    /**
+     * Returns a copy of these options with the given Radius Stepping rho,
+     * the number of nearest vertices defining each vertex radius.
+     *
+     * @param radius The radius value, or {@link #AUTO}.
+     * @return The new options.
+     */
+    public SolverOptions withRadius(int radius) {
+        return new SolverOptions(delta, radius, radiusShortcuts, runInParallel, offHeapDistances, metrics);
+    }
+
+    /**
+     * Returns a copy of these options that makes Radius Stepping add a
+     * shortcut edge from every vertex to each of its rho nearest vertices.
+     * The shortcuts bound the relaxation passes per round at the cost of
+     * rho extra edges per vertex; paths are still reported in original
+     * edges.
+     *
+     * @param radiusShortcuts Whether to add the shortcuts.
+     * @return The new options.
+     */
+    public SolverOptions withRadiusShortcuts(boolean radiusShortcuts) {
+        return new SolverOptions(delta, radius, radiusShortcuts, runInParallel, offHeapDistances, metrics);
+    }
+
+    /**
+     * Returns a copy of these options that runs on all cores or on the
+     * calling thread only.
+     *
+     * @param runInParallel Whether to run in parallel.
+     * @return The new options.
+     */
+    public SolverOptions withParallel(boolean runInParallel) {
+        return new SolverOptions(delta, radius, radiusShortcuts, runInParallel, offHeapDistances, metrics);
+    }
+
+    /**
+     * Returns a copy of these options that stores the distances and
+     * predecessors of returned results in direct memory instead of on the
+     * heap, for graphs with so many vertices that many retained results
+     * would crowd the heap.
+     *
+     * @param offHeapDistances Whether results are stored off-heap.
+     * @return The new options.
+     */
+    public SolverOptions withOffHeapDistances(boolean offHeapDistances) {
+        return new SolverOptions(delta, radius, radiusShortcuts, runInParallel, offHeapDistances, metrics);
+    }
+
+    /**
+     * Returns a copy of these options that records what the stepping
+     * engines do into the given metrics.
+     *
+     * @param metrics The metrics to add to, or {@code null} to collect none.
+     * @return The new options.
+     */
+    public SolverOptions withMetrics(SolverMetrics metrics) {
+        return new SolverOptions(delta, radius, radiusShortcuts, runInParallel, offHeapDistances, metrics);
+    }
+
+    /**
+     * Gets the Delta Stepping bucket width.
+     *
+     * @return The delta value, or {@link #AUTO}.
+     */
+    public int getDelta() {
+        return delta;
+    }
+
+    /**
+     * Gets the Radius Stepping rho.
+     *
+     * @return The radius value, or {@link #AUTO}.
+     */
+    public int getRadius() {
+        return radius;
+    }
+
+    /**
+     * Returns whether Radius Stepping adds shortcuts to the nearest vertices.
+     *
+     * @return {@code true} to add radius shortcuts.
+     */
+    public boolean isRadiusShortcuts() {
+        return radiusShortcuts;
+    }
+
+    /**
+     * Returns whether the solver may use all cores.
+     *
+     * @return {@code true} to run in parallel.
+     */
+    public boolean isRunInParallel() {
+        return runInParallel;
+    }
+
+    /**
+     * Returns whether results are stored off-heap.
+     *
+     * @return {@code true} to store results in direct memory.
+     */
+    public boolean isOffHeapDistances() {
+        return offHeapDistances;
+    }
+
+    /**
+     * Gets the metrics queries record into.
+     *
+     * @return The metrics, or {@code null} if none are collected.
+     */
+    public SolverMetrics getMetrics() {
+        return metrics;
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package utexas.edu.shortestpathalgorithm;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Holds the long-lived fork/join pool the engines run on when asked to run
+ * in parallel without being handed a pool. Its worker threads are daemons
+ * and are created once per JVM instead of once per query.
+ */
+final class SolverPool {
+
+    private SolverPool() {
+    }
+
+    /**
+     * Gets the shared pool, sized to the number of available cores.
+     *
+     * @return The shared pool.
+     */
+    static ForkJoinPool shared() {
+        return Holder.POOL;
+    }
+
+    private static class Holder {
+
+        static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package utexas.edu.shortestpathalgorithm;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Looks up {@link ShortestPathSolver}s by name. The reserved name
+ * {@value #AUTO} resolves to a solver that picks an engine per query from
+ * the graph's size and weight distribution and the available cores.
+ */
+public final class SolverRegistry {
+
+    /**
+     * The name of the self-selecting solver.
+     */
+    public static final String AUTO = "auto";
+
+    /**
+     * Below this many edges a parallel engine cannot amortize its
+     * coordination, so serial Dijkstra is chosen.
+     */
+    static final int PARALLEL_EDGE_THRESHOLD = 100_000;
+
+    /**
+     * Graphs whose maximum weight exceeds the average by this factor have
+     * a long-tailed weight distribution, which leaves most Delta Stepping
+     * buckets nearly empty; Radius Stepping adapts its step per vertex.
+     */
+    static final int SKEWED_WEIGHT_RATIO = 32;
+
+    private final Map<String, ShortestPathSolver> solvers = new ConcurrentHashMap<>();
+    private final ShortestPathSolver auto = new AutoSolver();
+
+    /**
+     * Creates a registry holding the Delta Stepping, partitioned Delta
+     * Stepping, Radius Stepping, Dijkstra, bidirectional Dijkstra, ALT and
+     * Contraction Hierarchy engines.
+     *
+     * @return The registry.
+     */
+    public static SolverRegistry createDefault() {
+        SolverRegistry registry = new SolverRegistry();
+        registry.register(new DeltaSteppingSolver());
+        registry.register(new PartitionedDeltaSteppingSolver());
+        registry.register(new RadiusSteppingSolver());
+        registry.register(new DijkstraSolver());
+        registry.register(new BidirectionalDijkstraSolver());
+        registry.register(new AltSolver());
+        registry.register(new ContractionHierarchySolver());
+        return registry;
+    }
+
+    /**
+     * Adds a solver, replacing any solver registered under the same name.
+     *
+     * @param solver The solver.
+     */
+    public void register(ShortestPathSolver solver) {
+        if (AUTO.equals(solver.getName())) {
+            throw new IllegalArgumentException("The name " + AUTO + " is reserved");
+        }
+        solvers.put(solver.getName(), solver);
+    }
+
+    /**
+     * Gets a solver by name.
+     *
+     * @param name The solver name, or {@value #AUTO}.
+     * @return The solver.
+     * @throws IllegalArgumentException If no solver has that name.
+     */
+    public ShortestPathSolver get(String name) {
+        if (AUTO.equals(name)) {
+            return auto;
+        }
+        ShortestPathSolver solver = solvers.get(name);
+        if (solver == null) {
+            throw new IllegalArgumentException("Unknown solver: " + name);
+        }
+        return solver;
+    }
+
+    /**
+     * Gets the names of all registered solvers, excluding {@value #AUTO}.
+     *
+     * @return The solver names.
+     */
+    public Set<String> getNames() {
+        return Collections.unmodifiableSet(solvers.keySet());
+    }
+
+    /**
+     * Picks the registered solver expected to answer a query on the graph
+     * fastest.
+     *
+     * @param graph The graph to be searched.
+     * @param options The options the query will run with.
+     * @return The chosen solver.
+     */
+    public ShortestPathSolver select(CsrGraph graph, SolverOptions options) {
+        String name;
+        if (!options.isRunInParallel()
+                || Runtime.getRuntime().availableProcessors() < 2
+                || graph.getNumEdges() < PARALLEL_EDGE_THRESHOLD) {
+            name = DijkstraSolver.NAME;
+        } else if (graph.getMaxWeight() > SKEWED_WEIGHT_RATIO * graph.getAverageWeight()) {
+            name = RadiusSteppingSolver.NAME;
+        } else {
+            name = DeltaSteppingSolver.NAME;
+        }
+        ShortestPathSolver solver = solvers.get(name);
+        return solver != null ? solver : solvers.values().iterator().next();
+    }
+
+    private class AutoSolver implements ShortestPathSolver {
+
+        @Override
+        public String getName() {
+            return AUTO;
+        }
+
+        @Override
+        public ShortestPathResult solve(CsrGraph graph, int source, SolverOptions options) {
+            return select(graph, options).solve(graph, source, options);
+        }
+
+        @Override
+        public PointToPointResult query(CsrGraph graph, int source, int target, SolverOptions options) {
+            // Where a serial search wins, searching from both ends wins more
+            ShortestPathSolver solver = select(graph, options);
+            if (solver.getName().equals(DijkstraSolver.NAME) && solvers.containsKey(BidirectionalDijkstraSolver.NAME)) {
+                solver = solvers.get(BidirectionalDijkstraSolver.NAME);
+            }
+            return solver.query(graph, source, target, options);
+        }
+    }
+}
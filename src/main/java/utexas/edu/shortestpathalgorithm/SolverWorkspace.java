@@ -0,0 +1,279 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package utexas.edu.shortestpathalgorithm;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The per-query scratch state of the engines, kept so that repeated queries
+ * on graphs of the same size run without allocating. A workspace serves one
+ * query at a time.
+ *
+ * <p>The parallel engines relax the packed distance/predecessor words in
+ * {@link #state} and call {@link #unpackState()} when done; serial engines
+ * write {@link #dist} and {@link #predecessors} directly.
+ *
+ * <p>Distances are not cleared with {@code Arrays.fill}. Every vertex whose
+ * distance is written is recorded once per query, deduplicated with an epoch
+ * stamp, and {@link #reset()} restores only those. The stamp arrays handed
+ * out by {@link #mark(int)} are never cleared either; callers compare them
+ * against fresh values from {@link #nextStamp()}.
+ */
+final class SolverWorkspace {
+
+    /**
+     * The stamp array reserved for the {@link FrontierRelaxer}; the engines
+     * use the ones below it.
+     */
+    static final int RELAXER_MARK = 2;
+
+    private static final int NUM_MARKS = 3;
+
+    private final int numVertices;
+    final long[] state;
+    final int[] dist;
+    final int[] predecessors;
+
+    private final IntList touched;
+    private final int[] touchedEpoch;
+    private int epoch;
+
+    private final int[][] marks;
+    private int stamp;
+
+    final IntList frontier;
+    final IntList settled;
+    final IntList improved;
+    final IntList candidates;
+    final IntList reached;
+
+    private IntList[] buckets;
+    private IndexedDaryHeap heap;
+    private FrontierRelaxer relaxer;
+
+    // Output buffers of parallel leaf tasks, claimed by slot and reused
+    private IntList[] buffers;
+    private final AtomicInteger claimed;
+
+    /**
+     * Initializes a workspace for graphs with the given number of vertices.
+     *
+     * @param numVertices The number of vertices.
+     */
+    SolverWorkspace(int numVertices) {
+        this.numVertices = numVertices;
+        this.state = new long[numVertices];
+        Arrays.fill(state, Relaxation.UNREACHED);
+        this.dist = new int[numVertices];
+        Arrays.fill(dist, Integer.MAX_VALUE);
+        this.predecessors = new int[numVertices];
+        Arrays.fill(predecessors, -1);
+        this.touched = new IntList();
+        this.touchedEpoch = new int[numVertices];
+        this.epoch = 1;
+        this.marks = new int[NUM_MARKS][];
+        this.frontier = new IntList();
+        this.settled = new IntList();
+        this.improved = new IntList();
+        this.candidates = new IntList();
+        this.reached = new IntList();
+        this.buckets = new IntList[0];
+        this.buffers = new IntList[16];
+        this.claimed = new AtomicInteger();
+    }
+
+    /**
+     * Gets the number of vertices this workspace was sized for.
+     *
+     * @return The number of vertices.
+     */
+    int getNumVertices() {
+        return numVertices;
+    }
+
+    /**
+     * Prepares the workspace for a new query, restoring every distance the
+     * previous query wrote to infinity.
+     */
+    void reset() {
+        for (int i = 0; i < touched.size(); i++) {
+            int v = touched.get(i);
+            state[v] = Relaxation.UNREACHED;
+            dist[v] = Integer.MAX_VALUE;
+            predecessors[v] = -1;
+        }
+        touched.clear();
+        if (++epoch == Integer.MAX_VALUE) {
+            Arrays.fill(touchedEpoch, 0);
+            epoch = 1;
+        }
+        frontier.clear();
+        settled.clear();
+        improved.clear();
+        candidates.clear();
+        reached.clear();
+        for (IntList bucket : buckets) {
+            bucket.clear();
+        }
+        if (heap != null) {
+            heap.clear();
+        }
+    }
+
+    /**
+     * Records that the distance of a vertex was written during this query.
+     * Must only be called from the thread driving the query.
+     *
+     * @param v The vertex.
+     * @return {@code true} if this is the first time {@code v} was recorded
+     * in this query.
+     */
+    boolean touch(int v) {
+        if (touchedEpoch[v] == epoch) {
+            return false;
+        }
+        touchedEpoch[v] = epoch;
+        touched.add(v);
+        return true;
+    }
+
+    /**
+     * Copies the packed state of every vertex touched in this query into
+     * {@link #dist} and {@link #predecessors}.
+     */
+    void unpackState() {
+        for (int i = 0; i < touched.size(); i++) {
+            int v = touched.get(i);
+            dist[v] = Relaxation.distance(state[v]);
+            predecessors[v] = Relaxation.predecessor(state[v]);
+        }
+    }
+
+    /**
+     * Gets a per-vertex stamp array. Its contents are arbitrary; compare
+     * entries against values from {@link #nextStamp()}.
+     *
+     * @param index Which of the stamp arrays to return.
+     * @return The stamp array.
+     */
+    int[] mark(int index) {
+        if (marks[index] == null) {
+            marks[index] = new int[numVertices];
+        }
+        return marks[index];
+    }
+
+    /**
+     * Returns a stamp value not yet stored in any stamp array.
+     *
+     * @return The stamp.
+     */
+    int nextStamp() {
+        if (++stamp == Integer.MAX_VALUE) {
+            for (int[] mark : marks) {
+                if (mark != null) {
+                    Arrays.fill(mark, 0);
+                }
+            }
+            stamp = 1;
+        }
+        return stamp;
+    }
+
+    /**
+     * Gets at least {@code count} empty bucket lists.
+     *
+     * @param count The number of buckets needed.
+     * @return The buckets.
+     */
+    IntList[] buckets(int count) {
+        if (buckets.length < count) {
+            IntList[] grown = Arrays.copyOf(buckets, count);
+            for (int i = buckets.length; i < count; i++) {
+                grown[i] = new IntList();
+            }
+            buckets = grown;
+        }
+        return buckets;
+    }
+
+    /**
+     * Gets an empty indexed heap over the vertices.
+     *
+     * @param arity The heap arity.
+     * @return The heap.
+     */
+    IndexedDaryHeap heap(int arity) {
+        if (heap == null || heap.getArity() != arity) {
+            heap = new IndexedDaryHeap(numVertices, arity);
+        }
+        return heap;
+    }
+
+    /**
+     * Gets the relaxer that relaxes frontiers on this workspace's state.
+     *
+     * @return The relaxer.
+     */
+    FrontierRelaxer relaxer() {
+        if (relaxer == null) {
+            relaxer = new FrontierRelaxer(this);
+        }
+        return relaxer;
+    }
+
+    /**
+     * Makes room for up to {@code maxBuffers} calls to {@link #claimBuffer()}
+     * before the next {@link #drainBuffers(IntList)}.
+     *
+     * @param maxBuffers The maximum number of leaf tasks.
+     */
+    void prepareBuffers(int maxBuffers) {
+        if (buffers.length < maxBuffers) {
+            buffers = Arrays.copyOf(buffers, Math.max(maxBuffers, buffers.length << 1));
+        }
+    }
+
+    /**
+     * Hands an empty output buffer to a leaf task. Safe to call from any
+     * worker thread.
+     *
+     * @return The buffer.
+     */
+    IntList claimBuffer() {
+        int slot = claimed.getAndIncrement();
+        IntList buffer = buffers[slot];
+        if (buffer == null) {
+            buffer = new IntList();
+            buffers[slot] = buffer;
+        } else {
+            buffer.clear();
+        }
+        return buffer;
+    }
+
+    /**
+     * Appends the contents of every claimed buffer to {@code into} and makes
+     * the buffers available again.
+     *
+     * @param into The list to append to.
+     */
+    void drainBuffers(IntList into) {
+        int count = claimed.getAndSet(0);
+        for (int i = 0; i < count; i++) {
+            into.addAll(buffers[i]);
+        }
+    }
+
+    /**
+     * Returns the maximum number of leaves a binary split of {@code size}
+     * items produces when leaves hold at most {@code threshold} items.
+     */
+    static int maxLeaves(long size, int threshold) {
+        return Math.toIntExact(2 * size / threshold + 1);
+    }
+}
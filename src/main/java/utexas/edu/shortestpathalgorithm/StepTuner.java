@@ -0,0 +1,141 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package utexas.edu.shortestpathalgorithm;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Adapts the step of a stepping engine (the Delta Stepping bucket width or
+ * the Radius Stepping radius scale) while it runs. After every window of
+ * steps it compares the vertices relaxed against the vertices settled:
+ *
+ * <ul>
+ * <li>Many re-relaxations or relaxation passes per step mean the step admits
+ * vertices whose distances are not final yet, so it is halved.</li>
+ * <li>Few re-relaxations with small frontiers mean the engine pays
+ * per-step overhead (empty buckets, synchronization) for little work, so
+ * it is doubled.</li>
+ * </ul>
+ *
+ * Steps only change by factors of two and stay within fixed bounds, so the
+ * value cannot oscillate wildly.
+ */
+final class StepTuner {
+
+    /**
+     * Re-relaxations per settled vertex above which the step shrinks.
+     */
+    static final double MAX_WASTE = 1.0;
+
+    /**
+     * Re-relaxations per settled vertex below which the step may grow.
+     */
+    static final double MIN_WASTE = 0.25;
+
+    /**
+     * Relaxation passes per step above which the step shrinks.
+     */
+    static final double MAX_PASSES = 8;
+
+    private final int window;
+    private final long min;
+    private final long max;
+    private final int targetFrontier;
+    private long value;
+
+    private int steps;
+    private long relaxed;
+    private long settled;
+    private long passes;
+
+    /**
+     * Initializes a tuner.
+     *
+     * @param initial The starting value.
+     * @param min The smallest value.
+     * @param max The largest value.
+     * @param window The number of steps between adjustments.
+     * @param targetFrontier The vertices per step that keep the engine busy.
+     */
+    StepTuner(long initial, long min, long max, int window, int targetFrontier) {
+        this.min = min;
+        this.max = Math.max(min, max);
+        this.value = Math.max(this.min, Math.min(this.max, initial));
+        this.window = window;
+        this.targetFrontier = targetFrontier;
+    }
+
+    /**
+     * Returns the frontier size that keeps a pool busy: one leaf task per
+     * worker, or one leaf when running on the calling thread.
+     *
+     * @param pool The pool, or {@code null}.
+     * @param leafSize The number of vertices one leaf task relaxes.
+     * @return The target frontier size.
+     */
+    static int targetFrontier(ForkJoinPool pool, int leafSize) {
+        return pool == null ? leafSize : pool.getParallelism() * leafSize;
+    }
+
+    /**
+     * Derives a Delta Stepping bucket width from graph statistics. Meyer and
+     * Sanders choose {@code maxWeight / averageDegree} for uniform weights;
+     * twice the average weight is the maximum of a uniform distribution with
+     * the same mean, which keeps the choice sensible for skewed weights whose
+     * maximum is an outlier.
+     *
+     * @param graph The graph.
+     * @return The initial delta.
+     */
+    static int initialDelta(CsrGraph graph) {
+        double degree = Math.max(1, graph.getAverageDegree());
+        double spread = Math.min(graph.getMaxWeight(), 2 * graph.getAverageWeight());
+        return Math.max(1, (int) (spread / degree));
+    }
+
+    /**
+     * Gets the current value.
+     *
+     * @return The step.
+     */
+    long get() {
+        return value;
+    }
+
+    /**
+     * Records one step and, at the end of a window, adjusts the value.
+     *
+     * @param relaxedCount The vertices whose edges were relaxed, counting a
+     * vertex once per pass it took part in.
+     * @param settledCount The vertices whose distances became final.
+     * @param passCount The relaxation passes the step needed.
+     * @return {@code true} if the value changed.
+     */
+    boolean record(long relaxedCount, long settledCount, int passCount) {
+        steps++;
+        relaxed += relaxedCount;
+        settled += settledCount;
+        passes += passCount;
+        if (steps < window) {
+            return false;
+        }
+        double waste = (double) (relaxed - settled) / Math.max(1, settled);
+        double passesPerStep = (double) passes / steps;
+        double settledPerStep = (double) settled / steps;
+        steps = 0;
+        relaxed = 0;
+        settled = 0;
+        passes = 0;
+
+        long previous = value;
+        if (waste > MAX_WASTE || passesPerStep > MAX_PASSES) {
+            value = Math.max(min, value >> 1);
+        } else if (waste < MIN_WASTE && settledPerStep < targetFrontier) {
+            value = Math.min(max, value << 1);
+        }
+        return value != previous;
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package utexas.edu.shortestpathalgorithm;
+
+import java.util.Arrays;
+
+/**
+ * Renumbers the vertices of a graph so that vertices which are searched
+ * together sit close together in memory. The solvers index their distance
+ * and predecessor arrays by vertex, so on a large graph numbered in input
+ * order nearly every relaxation touches a different cache line and often a
+ * different page; after renumbering, the neighbours of a vertex mostly fall
+ * in a narrow band of ids around it.
+ *
+ * <p>An ordering is a permutation between the original ids and the new ids.
+ * {@link #apply(CsrGraph)} builds the renumbered graph, and the
+ * {@code toOriginal} methods translate results on it back, so callers never
+ * see the new ids; {@link ReorderingSolver} does both around any solver.
+ */
+public final class VertexOrdering {
+
+    private final int[] newId;
+    private final int[] oldId;
+
+    private VertexOrdering(int[] oldId) {
+        this.oldId = oldId;
+        this.newId = new int[oldId.length];
+        for (int i = 0; i < oldId.length; i++) {
+            newId[oldId[i]] = i;
+        }
+    }
+
+    /**
+     * Orders the vertices in breadth-first order, restarting from the lowest
+     * unvisited vertex whenever a search runs dry. Each vertex's out-edges
+     * then lead to a run of consecutive ids.
+     *
+     * @param graph The graph.
+     * @return The ordering.
+     */
+    public static VertexOrdering breadthFirst(CsrGraph graph) {
+        int V = graph.getNumVertices();
+        int[] order = new int[V];
+        boolean[] visited = new boolean[V];
+        int tail = 0;
+        for (int seed = 0; seed < V; seed++) {
+            if (visited[seed]) {
+                continue;
+            }
+            visited[seed] = true;
+            order[tail++] = seed;
+            for (int head = tail - 1; head < tail; head++) {
+                int u = order[head];
+                for (long e = graph.edgeStart(u), end = graph.edgeEnd(u); e < end; e++) {
+                    int v = graph.target(e);
+                    if (!visited[v]) {
+                        visited[v] = true;
+                        order[tail++] = v;
+                    }
+                }
+            }
+        }
+        return new VertexOrdering(order);
+    }
+
+    /**
+     * Orders the vertices by Reverse Cuthill-McKee: a breadth-first search
+     * from a vertex of least degree that visits the new neighbours of each
+     * vertex in order of ascending degree, reversed at the end. This keeps
+     * the bandwidth of the adjacency matrix, the largest gap between the
+     * ids of two neighbours, small, and works best on meshes and road-like
+     * graphs.
+     *
+     * @param graph The graph.
+     * @return The ordering.
+     */
+    public static VertexOrdering reverseCuthillMcKee(CsrGraph graph) {
+        int V = graph.getNumVertices();
+        int[] order = new int[V];
+        boolean[] visited = new boolean[V];
+        long[] neighbours = new long[16];
+        int tail = 0;
+        // Each component starts from its vertex of least degree
+        for (int seed : ascendingDegree(graph)) {
+            if (visited[seed]) {
+                continue;
+            }
+            visited[seed] = true;
+            order[tail++] = seed;
+            for (int head = tail - 1; head < tail; head++) {
+                int u = order[head];
+                int count = 0;
+                for (long e = graph.edgeStart(u), end = graph.edgeEnd(u); e < end; e++) {
+                    int v = graph.target(e);
+                    if (!visited[v]) {
+                        visited[v] = true;
+                        if (count == neighbours.length) {
+                            neighbours = Arrays.copyOf(neighbours, 2 * count);
+                        }
+                        // Pack degree and vertex so a primitive sort orders by degree
+                        neighbours[count++] = ((long) graph.degree(v) << 32) | v;
+                    }
+                }
+                Arrays.sort(neighbours, 0, count);
+                for (int i = 0; i < count; i++) {
+                    order[tail++] = (int) neighbours[i];
+                }
+            }
+        }
+        for (int i = 0, j = V - 1; i < j; i++, j--) {
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+        return new VertexOrdering(order);
+    }
+
+    /**
+     * Orders the vertices by descending out-degree, keeping the original
+     * order among vertices of equal degree. On skewed graphs the few hubs,
+     * which are relaxed into most often, then share a handful of cache
+     * lines.
+     *
+     * @param graph The graph.
+     * @return The ordering.
+     */
+    public static VertexOrdering byDegree(CsrGraph graph) {
+        int[] order = ascendingDegree(graph);
+        int V = order.length;
+        // Reverse the ascending order run by run to keep ties stable
+        int[] descending = new int[V];
+        for (int end = V; end > 0;) {
+            int degree = graph.degree(order[end - 1]);
+            int start = end - 1;
+            while (start > 0 && graph.degree(order[start - 1]) == degree) {
+                start--;
+            }
+            System.arraycopy(order, start, descending, V - end, end - start);
+            end = start;
+        }
+        return new VertexOrdering(descending);
+    }
+
+    /**
+     * Sorts the vertices by ascending out-degree with a stable counting sort.
+     */
+    private static int[] ascendingDegree(CsrGraph graph) {
+        int V = graph.getNumVertices();
+        int maxDegree = 0;
+        for (int u = 0; u < V; u++) {
+            maxDegree = Math.max(maxDegree, graph.degree(u));
+        }
+        int[] start = new int[maxDegree + 2];
+        for (int u = 0; u < V; u++) {
+            start[graph.degree(u) + 1]++;
+        }
+        for (int d = 0; d <= maxDegree; d++) {
+            start[d + 1] += start[d];
+        }
+        int[] order = new int[V];
+        for (int u = 0; u < V; u++) {
+            order[start[graph.degree(u)]++] = u;
+        }
+        return order;
+    }
+
+    /**
+     * Builds the renumbered graph: vertex {@code toReordered(u)} has the
+     * edges of {@code u}, pointing at the renumbered targets, in the same
+     * weight order.
+     *
+     * @param graph The graph this ordering was computed for.
+     * @return The renumbered graph.
+     */
+    public Graph apply(CsrGraph graph) {
+        int V = graph.getNumVertices();
+        if (V != oldId.length) {
+            throw new IllegalArgumentException("The ordering has " + oldId.length + " vertices, the graph " + V);
+        }
+        int[] offsets = new int[V + 1];
+        int[] targets = new int[Math.toIntExact(graph.getNumEdges())];
+        int[] weights = new int[targets.length];
+        int slot = 0;
+        for (int u = 0; u < V; u++) {
+            int original = oldId[u];
+            for (long e = graph.edgeStart(original), end = graph.edgeEnd(original); e < end; e++) {
+                targets[slot] = newId[graph.target(e)];
+                weights[slot] = graph.weight(e);
+                slot++;
+            }
+            offsets[u + 1] = slot;
+        }
+        return Graph.fromCsr(offsets, targets, weights, graph.getMaxWeight(), graph.getTotalWeight());
+    }
+
+    /**
+     * Gets the number of vertices this ordering renumbers.
+     *
+     * @return The number of vertices.
+     */
+    public int getNumVertices() {
+        return oldId.length;
+    }
+
+    /**
+     * Gets the new id of a vertex.
+     *
+     * @param v The original id.
+     * @return The id in the renumbered graph.
+     */
+    public int toReordered(int v) {
+        return newId[v];
+    }
+
+    /**
+     * Gets the original id of a vertex.
+     *
+     * @param v The id in the renumbered graph.
+     * @return The original id.
+     */
+    public int toOriginal(int v) {
+        return oldId[v];
+    }
+
+    /**
+     * Translates a result computed on the renumbered graph back to the
+     * original ids.
+     *
+     * @param result The result on the renumbered graph.
+     * @param offHeap Whether to store the translated result in direct memory.
+     * @return The same distances and shortest path tree in original ids.
+     */
+    public ShortestPathResult toOriginal(ShortestPathResult result, boolean offHeap) {
+        int[] distances = result.getDistances();
+        int[] predecessors = result.getPredecessors();
+        int[] originalDistances = new int[distances.length];
+        int[] originalPredecessors = new int[predecessors.length];
+        for (int v = 0; v < distances.length; v++) {
+            int u = newId[v];
+            originalDistances[v] = distances[u];
+            originalPredecessors[v] = predecessors[u] < 0 ? predecessors[u] : oldId[predecessors[u]];
+        }
+        if (!offHeap) {
+            return new ShortestPathResult(result.getSolverName(), oldId[result.getSource()], originalDistances,
+                    originalPredecessors);
+        }
+        return ShortestPathResult.copyOf(result.getSolverName(), oldId[result.getSource()], originalDistances,
+                originalPredecessors, true);
+    }
+
+    /**
+     * Translates a point-to-point result computed on the renumbered graph
+     * back to the original ids.
+     *
+     * @param result The result on the renumbered graph.
+     * @return The same path in original ids.
+     */
+    public PointToPointResult toOriginal(PointToPointResult result) {
+        int[] path = result.getPath().clone();
+        for (int i = 0; i < path.length; i++) {
+            path[i] = oldId[path[i]];
+        }
+        return new PointToPointResult(result.getSolverName(), oldId[result.getSource()], oldId[result.getTarget()],
+                result.getDistance(), path, result.getSettledVertices());
+    }
+
+    /**
+     * Gets the mean distance between the ids of the two endpoints of an
+     * edge, which is smaller the better the ordering packs neighbours.
+     *
+     * @param graph The graph, in the ids to measure.
+     * @return The mean id gap per edge.
+     */
+    public static double meanEdgeSpan(CsrGraph graph) {
+        if (graph.getNumEdges() == 0) {
+            return 0;
+        }
+        double span = 0;
+        for (int u = 0; u < graph.getNumVertices(); u++) {
+            for (long e = graph.edgeStart(u), end = graph.edgeEnd(u); e < end; e++) {
+                span += Math.abs(graph.target(e) - u);
+            }
+        }
+        return span / graph.getNumEdges();
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package utexas.edu.shortestpathalgorithm;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps idle {@link SolverWorkspace}s grouped by vertex count so that
+ * concurrent queries each borrow one and return it afterwards. At most
+ * {@link #MAX_IDLE_PER_SIZE} workspaces of a size are kept, for the
+ * {@value #MAX_SIZES} most recently used sizes; surplus workspaces are left
+ * to the garbage collector.
+ */
+final class WorkspacePool {
+
+    /**
+     * The most idle workspaces kept per vertex count, enough for one query
+     * per core.
+     */
+    static final int MAX_IDLE_PER_SIZE = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The most vertex counts idle workspaces are kept for.
+     */
+    static final int MAX_SIZES = 4;
+
+    // Guarded by this, in access order so the least recently used size goes first
+    private final Map<Integer, ArrayDeque<SolverWorkspace>> idle
+            = new LinkedHashMap<Integer, ArrayDeque<SolverWorkspace>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, ArrayDeque<SolverWorkspace>> eldest) {
+            return size() > MAX_SIZES;
+        }
+    };
+
+    /**
+     * Borrows a workspace for a graph, creating one if none is idle.
+     *
+     * @param graph The graph to be searched.
+     * @return The workspace.
+     */
+    SolverWorkspace acquire(CsrGraph graph) {
+        return acquire(graph.getNumVertices());
+    }
+
+    /**
+     * Borrows a workspace for a number of vertices, creating one if none is
+     * idle.
+     *
+     * @param numVertices The number of vertices to be searched.
+     * @return The workspace.
+     */
+    SolverWorkspace acquire(int numVertices) {
+        SolverWorkspace workspace;
+        synchronized (this) {
+            ArrayDeque<SolverWorkspace> queue = idle.get(numVertices);
+            workspace = queue == null ? null : queue.poll();
+        }
+        return workspace != null ? workspace : new SolverWorkspace(numVertices);
+    }
+
+    /**
+     * Returns a workspace once its query's results have been copied out. It
+     * is dropped if enough workspaces of its size are idle already.
+     *
+     * @param workspace The workspace.
+     */
+    synchronized void release(SolverWorkspace workspace) {
+        ArrayDeque<SolverWorkspace> queue = idle.computeIfAbsent(workspace.getNumVertices(), n -> new ArrayDeque<>());
+        if (queue.size() < MAX_IDLE_PER_SIZE) {
+            queue.push(workspace);
+        }
+    }
+}